@@ -0,0 +1,46 @@
+package com.github.tatercertified.asm_stripper.benchmark;
+
+import com.github.tatercertified.asm_stripper.backend.util.JarUtils;
+import org.objectweb.asm.tree.ClassNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link JarUtils#getClassNodes(boolean)} on synthetic jars
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JarScanBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int classCount;
+
+    @Param({"0.01", "0.1"})
+    public double stripDensity;
+
+    @Param({"64"})
+    public int methodSize;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private Path jar;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.jar = SyntheticJar.generate(this.classCount, this.stripDensity, this.methodSize);
+        JarUtils.setJarPath(this.jar);
+    }
+
+    @Benchmark
+    public List<ClassNode> getClassNodes() throws IOException {
+        return JarUtils.getClassNodes(this.parallel);
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.tatercertified.asm_stripper.benchmark;
+
+import com.github.tatercertified.asm_stripper.api.StripType;
+import com.github.tatercertified.asm_stripper.api.StripperPlugin;
+import com.github.tatercertified.asm_stripper.backend.util.AbstractNode;
+import com.github.tatercertified.asm_stripper.backend.util.JarUtils;
+import com.github.tatercertified.asm_stripper.backend.util.StripProcessor;
+import org.objectweb.asm.tree.ClassNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full {@link StripProcessor#processStrips(StripperPlugin)} run on synthetic jars.<p>
+ * The generated Strips only target their own class, so no Mixin environment is needed
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessStripsBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int classCount;
+
+    @Param({"0.01", "0.1"})
+    public double stripDensity;
+
+    @Param({"16", "256"})
+    public int methodSize;
+
+    private StripperPlugin plugin;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Path jar = SyntheticJar.generate(this.classCount, this.stripDensity, this.methodSize);
+        this.plugin = new StripperPlugin() {
+            @Override
+            public List<ClassNode> init() {
+                JarUtils.setJarPath(jar);
+                try {
+                    return JarUtils.getClassNodes();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public void preLoad() {
+            }
+
+            @Override
+            public void preStrip(AbstractNode node, StripType type) {
+            }
+
+            @Override
+            public void postStrip(AbstractNode node, StripType type) {
+            }
+
+            @Override
+            public void onFinish() {
+            }
+        };
+    }
+
+    @Benchmark
+    public void processStrips() {
+        StripProcessor.processStrips(this.plugin);
+    }
+}
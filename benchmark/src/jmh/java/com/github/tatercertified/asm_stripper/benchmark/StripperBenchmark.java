@@ -0,0 +1,64 @@
+package com.github.tatercertified.asm_stripper.benchmark;
+
+import com.github.tatercertified.asm_stripper.backend.stripper.ClassStripper;
+import com.github.tatercertified.asm_stripper.backend.stripper.FieldStripper;
+import com.github.tatercertified.asm_stripper.backend.stripper.MethodStripper;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each stripper in isolation on a single synthetic class.<p>
+ * A fresh ClassNode is parsed before every invocation, as stripping edits it in place
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StripperBenchmark {
+    @Param({"16", "256", "4096"})
+    public int methodSize;
+
+    private byte[] classBytes;
+    private ClassNode target;
+    private MethodNode strippedMethod;
+    private FieldNode strippedField;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        this.classBytes = SyntheticJar.generateClass(SyntheticJar.className(0), true, false, this.methodSize);
+    }
+
+    @Setup(Level.Invocation)
+    public void parse() {
+        this.target = new ClassNode();
+        new ClassReader(this.classBytes).accept(this.target, ClassReader.EXPAND_FRAMES);
+        this.strippedMethod = this.target.methods.stream().filter(method -> method.name.equals("stripped")).findFirst().orElseThrow();
+        this.strippedField = this.target.fields.stream().filter(field -> field.name.equals("STRIPPED")).findFirst().orElseThrow();
+    }
+
+    @Benchmark
+    public ClassNode stripClass() {
+        ClassStripper.stripClass(this.target, List.of(this.target));
+        return this.target;
+    }
+
+    @Benchmark
+    public ClassNode stripMethod() {
+        MethodStripper.stripMethod(this.strippedMethod, this.target);
+        return this.target;
+    }
+
+    @Benchmark
+    public ClassNode stripField() {
+        FieldStripper.stripField(this.strippedField, this.target);
+        return this.target;
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.tatercertified.asm_stripper.benchmark;
+
+import com.github.tatercertified.asm_stripper.api.annotation.Strip;
+import com.github.tatercertified.asm_stripper.api.annotation.Strippable;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Generates jars of synthetic classes for benchmarking.<p>
+ * Every class has a static field set in {@code <clinit>} and a {@code compute} method of a configurable size.
+ * Strippable classes also get a {@link Strip} field and method that {@code compute} uses,
+ * and every tenth Strippable class is stripped as a whole
+ */
+public final class SyntheticJar {
+    public static final String PACKAGE = "bench/gen/";
+    private static final String STRIP_DESC = Type.getDescriptor(Strip.class);
+    private static final String STRIPPABLE_DESC = Type.getDescriptor(Strippable.class);
+
+    /**
+     * Writes a synthetic jar to a temporary file
+     * @param classCount Number of classes in the jar
+     * @param stripDensity Fraction of classes that are Strippable, from 0 to 1
+     * @param methodSize Number of instructions in each {@code compute} method
+     * @return Path of the jar
+     * @throws IOException Failed to write the jar
+     */
+    public static Path generate(int classCount, double stripDensity, int methodSize) throws IOException {
+        Path jar = Files.createTempFile("asm-stripper-bench-" + classCount + "-", ".jar");
+        jar.toFile().deleteOnExit();
+        // Spread the Strippable classes evenly instead of clustering them at the start
+        int stride = stripDensity > 0 ? Math.max(1, (int) Math.round(1 / stripDensity)) : Integer.MAX_VALUE;
+
+        try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out)) {
+            int strippable = 0;
+            for (int i = 0; i < classCount; i++) {
+                boolean isStrippable = i % stride == 0;
+                boolean stripClass = isStrippable && strippable++ % 10 == 9;
+                String name = className(i);
+                jarOut.putNextEntry(new JarEntry(name + ".class"));
+                jarOut.write(generateClass(name, isStrippable, stripClass, methodSize));
+                jarOut.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    /**
+     * Gets the internal name of a generated class
+     * @param index Index of the class
+     * @return Internal class name
+     */
+    public static String className(int index) {
+        return PACKAGE + "Class" + index;
+    }
+
+    /**
+     * Generates a single synthetic class
+     * @param name Internal class name
+     * @param strippable If the class is Strippable and has Strip members
+     * @param stripClass If the whole class is annotated with Strip
+     * @param methodSize Number of instructions in the {@code compute} method
+     * @return Class file bytes
+     */
+    public static byte[] generateClass(String name, boolean strippable, boolean stripClass, int methodSize) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        writer.visit(Opcodes.V21, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, "java/lang/Object", null);
+        if (strippable) {
+            writer.visitAnnotation(STRIPPABLE_DESC, true).visitEnd();
+        }
+        if (stripClass) {
+            writer.visitAnnotation(STRIP_DESC, true).visitEnd();
+        }
+
+        writer.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "VALUE", "I", null, null).visitEnd();
+        if (strippable) {
+            FieldVisitor field = writer.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "STRIPPED", "I", null, null);
+            field.visitAnnotation(STRIP_DESC, true).visitEnd();
+            field.visitEnd();
+        }
+
+        MethodVisitor init = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        MethodVisitor clinit = writer.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+        clinit.visitCode();
+        clinit.visitLdcInsn(name.length());
+        clinit.visitFieldInsn(Opcodes.PUTSTATIC, name, "VALUE", "I");
+        if (strippable) {
+            clinit.visitLdcInsn(name.hashCode());
+            clinit.visitFieldInsn(Opcodes.PUTSTATIC, name, "STRIPPED", "I");
+        }
+        clinit.visitInsn(Opcodes.RETURN);
+        clinit.visitMaxs(0, 0);
+        clinit.visitEnd();
+
+        if (strippable) {
+            MethodVisitor stripped = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "stripped", "(II)I", null, null);
+            stripped.visitAnnotation(STRIP_DESC, true).visitEnd();
+            stripped.visitCode();
+            stripped.visitVarInsn(Opcodes.ILOAD, 0);
+            stripped.visitVarInsn(Opcodes.ILOAD, 1);
+            stripped.visitInsn(Opcodes.IADD);
+            stripped.visitInsn(Opcodes.IRETURN);
+            stripped.visitMaxs(0, 0);
+            stripped.visitEnd();
+        }
+
+        // Each block is 4 instructions, every fourth block calls the Strip method when there is one
+        MethodVisitor compute = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "compute", "(I)I", null, null);
+        compute.visitCode();
+        for (int block = 0; block < Math.max(1, methodSize / 4); block++) {
+            compute.visitVarInsn(Opcodes.ILOAD, 0);
+            if (strippable && block % 4 == 0) {
+                compute.visitFieldInsn(Opcodes.GETSTATIC, name, "VALUE", "I");
+                compute.visitMethodInsn(Opcodes.INVOKESTATIC, name, "stripped", "(II)I", false);
+            } else {
+                compute.visitFieldInsn(Opcodes.GETSTATIC, name, "VALUE", "I");
+                compute.visitInsn(Opcodes.IADD);
+            }
+            compute.visitVarInsn(Opcodes.ISTORE, 0);
+        }
+        compute.visitVarInsn(Opcodes.ILOAD, 0);
+        compute.visitInsn(Opcodes.IRETURN);
+        compute.visitMaxs(0, 0);
+        compute.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.tatercertified.asm_stripper.gradle;
+
+import com.github.tatercertified.asm_stripper.api.StripMode;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.api.tasks.TaskProvider;
+import org.gradle.api.tasks.bundling.Jar;
+
+/**
+ * Registers the {@code stripJar} task, which applies Strips to the output of the {@code jar} task at build time.<p>
+ * The stripped jar keeps the file name of the input and is written to {@code build/stripped}.
+ * The compile class path of the main source set is used to recompute the frames of edited methods.
+ * Projects that remap or repackage their jar should point that step at {@link StripJarTask#getOutputJar()}
+ */
+public class ASMStripperGradlePlugin implements Plugin<Project> {
+    /**
+     * Name of the registered task
+     */
+    public static final String TASK_NAME = "stripJar";
+
+    @Override
+    public void apply(Project project) {
+        project.getPluginManager().withPlugin("java", plugin -> {
+            TaskProvider<Jar> jar = project.getTasks().named("jar", Jar.class);
+            project.getTasks().register(TASK_NAME, StripJarTask.class, task -> {
+                task.setGroup("build");
+                task.setDescription("Applies every Strip that can be resolved inside the jar, and embeds a Strip Index for the rest");
+                task.getInputJar().set(jar.flatMap(Jar::getArchiveFile));
+                task.getOutputJar().set(project.getLayout().getBuildDirectory().file(jar.flatMap(Jar::getArchiveFileName).map(name -> "stripped/" + name)));
+                task.getClasspath().from(project.getExtensions().getByType(SourceSetContainer.class)
+                        .getByName(SourceSet.MAIN_SOURCE_SET_NAME).getCompileClasspath());
+                task.getParallel().convention(true);
+                task.getMode().convention(StripMode.Tree);
+            });
+        });
+    }
+}
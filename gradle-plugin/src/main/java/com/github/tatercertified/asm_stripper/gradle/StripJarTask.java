@@ -0,0 +1,79 @@
+package com.github.tatercertified.asm_stripper.gradle;
+
+import com.github.tatercertified.asm_stripper.api.StripMode;
+import com.github.tatercertified.asm_stripper.backend.util.BuildStripper;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Strips a jar at build time with {@link BuildStripper}
+ */
+@CacheableTask
+public abstract class StripJarTask extends DefaultTask {
+    /**
+     * Gets the jar to strip
+     * @return Input jar property
+     */
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getInputJar();
+
+    /**
+     * Gets the path of the stripped jar
+     * @return Output jar property
+     */
+    @OutputFile
+    public abstract RegularFileProperty getOutputJar();
+
+    /**
+     * Gets the classes the jar compiles against, which frame computation needs to find common superclasses
+     * @return Class path files
+     */
+    @Classpath
+    public abstract ConfigurableFileCollection getClasspath();
+
+    /**
+     * Gets if the jar is scanned on all cores
+     * @return Parallel scan property
+     */
+    @Input
+    public abstract Property<Boolean> getParallel();
+
+    /**
+     * Gets how the edited classes are rewritten
+     * @return Strip mode property
+     */
+    @Input
+    public abstract Property<StripMode> getMode();
+
+    @TaskAction
+    public void strip() {
+        try {
+            BuildStripper.Result result = BuildStripper.strip(
+                    this.getInputJar().get().getAsFile().toPath(),
+                    this.getOutputJar().get().getAsFile().toPath(),
+                    this.getParallel().get(),
+                    this.getMode().get(),
+                    this.getClasspath().getFiles().stream().map(File::toPath).toList()
+            );
+            this.getLogger().lifecycle("Applied {} Strips, removed {} classes, rewrote {} classes, left {} classes for runtime",
+                    result.applied(), result.removedClasses(), result.rewrittenClasses(), result.deferredClasses());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
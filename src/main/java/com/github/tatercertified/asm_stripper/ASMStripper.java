@@ -1,5 +1,60 @@
 package com.github.tatercertified.asm_stripper;
 
+import com.github.tatercertified.asm_stripper.api.StripListener;
+import com.github.tatercertified.asm_stripper.backend.util.LazyStrips;
+import com.github.tatercertified.asm_stripper.backend.util.StripEvents;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+
 public class ASMStripper {
-    public static boolean VERBOSE = true;
-}
\ No newline at end of file
+    /**
+     * Version of ASM Stripper, filled in from the build.<p>
+     * A {@link com.github.tatercertified.asm_stripper.backend.util.StripIndex} written by another version is never replayed
+     */
+    public static final String VERSION = readVersion();
+
+    /**
+     * Registers a listener for timings, counters, and debug messages.<p>
+     * Use {@link com.github.tatercertified.asm_stripper.api.Slf4jStripListener} to log them
+     * @param listener StripListener instance
+     */
+    public static void addListener(StripListener listener) {
+        StripEvents.register(listener);
+    }
+
+    /**
+     * Unregisters a listener
+     * @param listener StripListener instance
+     */
+    public static void removeListener(StripListener listener) {
+        StripEvents.unregister(listener);
+    }
+
+    /**
+     * Applies the Strips that {@link com.github.tatercertified.asm_stripper.api.StripperPlugin#lazy()} left for a class.<p>
+     * Call this from {@link org.spongepowered.asm.mixin.extensibility.IMixinConfigPlugin#postApply},
+     * so code merged in from Mixins is stripped as well. Each class is only stripped the first time
+     * @param targetClassName Name of the class being transformed, either dotted or internal
+     * @param targetClass ClassNode of the class being transformed
+     * @return True if any Strips were applied
+     */
+    public static boolean applyLazyStrips(String targetClassName, ClassNode targetClass) {
+        return LazyStrips.apply(targetClassName, targetClass);
+    }
+
+    private static String readVersion() {
+        Properties properties = new Properties();
+        try (InputStream in = ASMStripper.class.getResourceAsStream("version.properties")) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return properties.getProperty("version", "unknown");
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.tatercertified.asm_stripper;
+
+import com.github.tatercertified.asm_stripper.api.StripListener;
+import com.github.tatercertified.asm_stripper.api.StripMode;
+import com.github.tatercertified.asm_stripper.backend.util.BuildStripper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command-line entry point that strips a jar into a new jar.<p>
+ * Usage: {@code java -jar ASM_Stripper.jar [--parallel] [--visitor] [--verbose] [--classpath <paths>] <input.jar> <output.jar>}<p>
+ * The class path lists the jars and directories the input compiles against, separated like the {@code java} class path,
+ * so the frames of edited methods can be recomputed
+ */
+public class StripperCli {
+    public static void main(String[] args) {
+        boolean parallel = false;
+        boolean verbose = false;
+        StripMode mode = StripMode.Tree;
+        List<Path> classpath = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        boolean invalid = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--parallel" -> parallel = true;
+                case "--visitor" -> mode = StripMode.Visitor;
+                case "--verbose" -> verbose = true;
+                case "--classpath" -> {
+                    if (++i < args.length) {
+                        for (String path : args[i].split(File.pathSeparator)) {
+                            if (!path.isEmpty()) {
+                                classpath.add(Path.of(path));
+                            }
+                        }
+                    } else {
+                        invalid = true;
+                    }
+                }
+                default -> paths.add(args[i]);
+            }
+        }
+        if (invalid || paths.size() != 2 || paths.stream().anyMatch(path -> path.startsWith("--"))) {
+            System.err.println("Usage: java -jar ASM_Stripper.jar [--parallel] [--visitor] [--verbose] [--classpath <paths>] <input.jar> <output.jar>");
+            System.exit(2);
+            return;
+        }
+
+        if (verbose) {
+            ASMStripper.addListener(new StripListener() {
+                @Override
+                public boolean isDebugEnabled() {
+                    return true;
+                }
+
+                @Override
+                public void onDebug(String message) {
+                    System.err.println(message);
+                }
+            });
+        }
+
+        try {
+            BuildStripper.Result result = BuildStripper.strip(Path.of(paths.get(0)), Path.of(paths.get(1)), parallel, mode, classpath);
+            System.out.println("Applied " + result.applied() + " Strips, removed " + result.removedClasses()
+                    + " classes, rewrote " + result.rewrittenClasses() + " classes, left " + result.deferredClasses() + " classes for runtime");
+        } catch (IOException | IllegalStateException e) {
+            System.err.println("Failed to strip " + paths.get(0) + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
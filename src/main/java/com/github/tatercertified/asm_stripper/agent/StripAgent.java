@@ -0,0 +1,122 @@
+package com.github.tatercertified.asm_stripper.agent;
+
+import com.github.tatercertified.asm_stripper.backend.util.JarUtils;
+import com.github.tatercertified.asm_stripper.backend.util.ReferenceIndex;
+import com.github.tatercertified.asm_stripper.backend.util.StripEvents;
+import com.github.tatercertified.asm_stripper.backend.util.StripIndex;
+import com.github.tatercertified.asm_stripper.backend.util.StripPlan;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Java agent that strips classes as the JVM loads them, for applications that do not run Mixin.<p>
+ * Usage: {@code -javaagent:ASM_Stripper.jar=<path>}, where the path is a jar or class directory to scan for Strips,
+ * or a {@link StripIndex} file. Several jars and class directories can be given, separated like a classpath,
+ * and are scanned in parallel into one plan. The plan is computed once, before any target is loaded,
+ * and every class is then edited with a {@link StripTransformer}.
+ * Classes using a stripped class or member are found through a {@link ReferenceIndex} of the scanned paths.<p>
+ * Strips are unconditional here, as there is no {@link com.github.tatercertified.asm_stripper.api.StripperPlugin} to ask
+ */
+public final class StripAgent {
+    /**
+     * Entry point when the agent is given on the command line
+     * @param args Paths of jars or class directories, or the path of a StripIndex file
+     * @param instrumentation Instrumentation of the JVM
+     */
+    public static void premain(String args, Instrumentation instrumentation) {
+        install(args, instrumentation);
+    }
+
+    /**
+     * Entry point when the agent is attached to a running JVM.<p>
+     * Classes that were loaded before attaching are not stripped
+     * @param args Paths of jars or class directories, or the path of a StripIndex file
+     * @param instrumentation Instrumentation of the JVM
+     */
+    public static void agentmain(String args, Instrumentation instrumentation) {
+        install(args, instrumentation);
+    }
+
+    private static void install(String args, Instrumentation instrumentation) {
+        if (args == null || args.isEmpty()) {
+            throw new IllegalArgumentException("ASM Stripper agent needs the path of a jar, class directory, or Strip Index");
+        }
+
+        StripPlan plan;
+        try {
+            List<Path> paths = new ArrayList<>();
+            for (String path : args.split(File.pathSeparator)) {
+                if (!path.isEmpty()) {
+                    paths.add(Path.of(path));
+                }
+            }
+            plan = plan(paths);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to compute the Strip plan from " + args, e);
+        }
+        instrumentation.addTransformer(new StripTransformer(plan));
+        if (StripEvents.isDebugEnabled()) {
+            StripEvents.debug("ASM Stripper agent installed with " + plan.getTargets().size() + " targets");
+        }
+    }
+
+    /**
+     * Computes the plan for a jar, class directory, or StripIndex file
+     * @param path Path to read the Strips from
+     * @return StripPlan with every target registered by name
+     * @throws IOException Failed to read the path
+     */
+    public static StripPlan plan(Path path) throws IOException {
+        return plan(List.of(path));
+    }
+
+    /**
+     * Computes one plan for several jars and class directories, or for a single StripIndex file.<p>
+     * Strips can target and reference classes in any of the paths
+     * @param paths Paths to read the Strips from
+     * @return StripPlan with every target registered by name
+     * @throws IOException Failed to read a path
+     */
+    public static StripPlan plan(List<Path> paths) throws IOException {
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("No path to read Strips from");
+        }
+        Path path = paths.getFirst();
+        StripPlan plan = new StripPlan();
+        if (paths.size() == 1 && Files.isRegularFile(path) && !path.toString().endsWith(".jar")) {
+            StripIndex index = StripIndex.read(path);
+            if (index == null) {
+                throw new IOException("Malformed Strip Index: " + path);
+            }
+            // The index stores the references to its Strips, so the classes using them are edited without reading any
+            ReferenceIndex references = index.getReferences();
+            for (StripIndex.Entry strip : index.getStrips()) {
+                plan.add(strip, references);
+            }
+            return plan;
+        }
+
+        JarUtils.setJarPath(path);
+        JarUtils.setScanRoots(paths.subList(1, paths.size()));
+        List<StripIndex.Entry> strips = new ArrayList<>();
+        // Only the Strips are kept, so each node is released as soon as it is read
+        JarUtils.forEachClassNode(true, null, node -> strips.addAll(StripIndex.entriesOf(node)));
+        Set<String> owners = new HashSet<>();
+        for (StripIndex.Entry strip : strips) {
+            owners.addAll(strip.targetNames());
+        }
+        ReferenceIndex references = JarUtils.getReferences(owners, true);
+        for (StripIndex.Entry strip : strips) {
+            plan.add(strip, references);
+        }
+        return plan;
+    }
+}
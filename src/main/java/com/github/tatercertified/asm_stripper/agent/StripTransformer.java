@@ -0,0 +1,59 @@
+package com.github.tatercertified.asm_stripper.agent;
+
+import com.github.tatercertified.asm_stripper.backend.util.ClassVerifier;
+import com.github.tatercertified.asm_stripper.backend.util.StripEvents;
+import com.github.tatercertified.asm_stripper.backend.util.StripPlan;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+
+/**
+ * Applies a precomputed {@link StripPlan} to classes as they are loaded.<p>
+ * Classes are streamed through {@link StripPlan.Target#apply(byte[])}, without building a ClassNode.
+ * Classes without planned Strips are returned untouched, costing only a map lookup.<p>
+ * Every rewritten class is checked with a {@link ClassVerifier} first, which compares its stack map frames with the code
+ * except for reference assignability, and a class that fails to strip or verify is reported through {@link StripEvents#error}
+ * and loaded unstripped
+ */
+public final class StripTransformer implements ClassFileTransformer {
+    private final StripPlan plan;
+
+    /**
+     * Creates a transformer for a plan
+     * @param plan StripPlan with its targets registered by name
+     */
+    public StripTransformer(StripPlan plan) {
+        this.plan = plan;
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+        if (className == null) {
+            return null;
+        }
+        StripPlan.Target target = this.plan.getTarget(className);
+        if (target == null) {
+            return null;
+        }
+
+        byte[] stripped;
+        try {
+            stripped = target.apply(classfileBuffer);
+        } catch (Throwable t) {
+            // An exception thrown here would be swallowed by the JVM, so the class is loaded unstripped instead
+            StripEvents.error("Failed to strip " + className + ", loading it unstripped", t);
+            return null;
+        }
+        if (stripped == classfileBuffer) {
+            return null;
+        }
+
+        // A class the JVM rejects only fails once it is defined, too late to fall back to the original bytes
+        String problem = ClassVerifier.verify(stripped);
+        if (problem != null) {
+            StripEvents.error("Stripped " + className + " does not verify, loading it unstripped: " + problem, null);
+            return null;
+        }
+        return stripped;
+    }
+}
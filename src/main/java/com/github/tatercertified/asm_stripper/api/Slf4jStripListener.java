@@ -0,0 +1,59 @@
+package com.github.tatercertified.asm_stripper.api;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Logs ASM Stripper events through SLF4J.<p>
+ * Phase timings and counter totals are logged at info level when the run finishes, debug messages at debug level
+ */
+public class Slf4jStripListener implements StripListener {
+    private final Logger logger;
+    private final AtomicLongArray totals = new AtomicLongArray(StripCounter.values().length);
+
+    public Slf4jStripListener() {
+        this(LoggerFactory.getLogger("ASM Stripper"));
+    }
+
+    public Slf4jStripListener(Logger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public void onPhaseStart(StripPhase phase) {
+        this.logger.debug("Stripper {} started", phase);
+    }
+
+    @Override
+    public void onPhaseEnd(StripPhase phase, long durationNanos) {
+        this.logger.info("Stripper {} took {} ms", phase, durationNanos / 1_000_000.0);
+        if (phase == StripPhase.Finish) {
+            for (StripCounter counter : StripCounter.values()) {
+                this.logger.info("{}: {}", counter, this.totals.getAndSet(counter.ordinal(), 0));
+            }
+        }
+    }
+
+    @Override
+    public void onCount(StripCounter counter, long amount) {
+        this.totals.addAndGet(counter.ordinal(), amount);
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return this.logger.isDebugEnabled();
+    }
+
+    @Override
+    public void onDebug(String message) {
+        this.logger.debug(message);
+    }
+
+    @Override
+    public void onError(String message, @Nullable Throwable error) {
+        this.logger.error(message, error);
+    }
+}
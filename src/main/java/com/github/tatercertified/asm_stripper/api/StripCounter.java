@@ -0,0 +1,43 @@
+package com.github.tatercertified.asm_stripper.api;
+
+/**
+ * Counters reported to {@link StripListener}s during a Strip run
+ */
+public enum StripCounter {
+    /**
+     * Classes read from the jar
+     */
+    ClassesScanned,
+    /**
+     * Classes, methods, and fields selected for stripping
+     */
+    MembersMatched,
+    /**
+     * Instructions removed from target methods
+     */
+    InstructionsRemoved,
+    /**
+     * Target classes loaded, not counting cache hits
+     */
+    TargetsResolved,
+    /**
+     * Target lookups served by the {@link com.github.tatercertified.asm_stripper.backend.util.TargetCache}
+     */
+    TargetCacheHits,
+    /**
+     * Line numbers, local variables, try-catch blocks, and InnerClasses entries pruned along with removed code
+     */
+    DebugEntriesRemoved,
+    /**
+     * Private methods and fields removed by the tree shake after stripping
+     */
+    MembersShaken,
+    /**
+     * Class file bytes reclaimed by the tree shake
+     */
+    BytesReclaimed,
+    /**
+     * Failures reported as errors, each leaving a class or method unstripped
+     */
+    Failures,
+}
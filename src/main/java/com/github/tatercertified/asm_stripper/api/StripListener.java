@@ -0,0 +1,62 @@
+package com.github.tatercertified.asm_stripper.api;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Receives timings, counters, and debug messages from ASM Stripper.<p>
+ * Register with {@link com.github.tatercertified.asm_stripper.ASMStripper#addListener(StripListener)}.
+ * While no listener is registered, no events are built at all
+ */
+public interface StripListener {
+    /**
+     * Called when a phase starts
+     * @param phase The phase
+     */
+    default void onPhaseStart(StripPhase phase) {
+    }
+
+    /**
+     * Called when a phase ends
+     * @param phase The phase
+     * @param durationNanos How long the phase took in nanoseconds
+     */
+    default void onPhaseEnd(StripPhase phase, long durationNanos) {
+    }
+
+    /**
+     * Called when a counter is incremented
+     * @param counter The counter
+     * @param amount Amount added to the counter
+     */
+    default void onCount(StripCounter counter, long amount) {
+    }
+
+    /**
+     * If this listener wants debug messages.<p>
+     * Debug messages are only built while at least one listener returns true
+     * @return True to receive {@link StripListener#onDebug(String)}
+     */
+    default boolean isDebugEnabled() {
+        return false;
+    }
+
+    /**
+     * Called with a human-readable debug message
+     * @param message The message
+     */
+    default void onDebug(String message) {
+    }
+
+    /**
+     * Called when a failure left a class or method unstripped.<p>
+     * Errors are always reported, to the standard error stream unless this is overridden
+     * @param message The message
+     * @param error Cause of the failure, or null
+     */
+    default void onError(String message, @Nullable Throwable error) {
+        System.err.println("[ASM Stripper] " + message);
+        if (error != null) {
+            error.printStackTrace();
+        }
+    }
+}
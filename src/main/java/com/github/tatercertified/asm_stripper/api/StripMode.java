@@ -0,0 +1,18 @@
+package com.github.tatercertified.asm_stripper.api;
+
+/**
+ * How Strips are applied to classes that are only available as bytes, such as jar entries during a build
+ */
+public enum StripMode {
+    /**
+     * Each class is read into a ClassNode, edited, and written back.<p>
+     * Stripped calls are removed with every instruction computing their arguments
+     */
+    Tree,
+    /**
+     * Each class is streamed from a ClassReader to a ClassWriter, without building a ClassNode.<p>
+     * Stripped calls are removed with the straight-line instructions computing their arguments, as in {@link #Tree}.
+     * Arguments computed across a branch or label are still computed and then popped
+     */
+    Visitor,
+}
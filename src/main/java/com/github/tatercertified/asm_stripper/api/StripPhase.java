@@ -0,0 +1,33 @@
+package com.github.tatercertified.asm_stripper.api;
+
+/**
+ * Phases of a Strip run, reported to {@link StripListener}s with their duration
+ */
+public enum StripPhase {
+    /**
+     * {@link StripperPlugin#init()}, reading and scanning the jar.<p>
+     * If {@link StripperPlugin#streamScan()} is enabled, classes are checked as they are read,
+     * so Init comes after {@link #PreLoad} and only lasts until the first class is read, the rest of the jar being read during {@link #Scan}
+     */
+    Init,
+    /**
+     * {@link StripperPlugin#preLoad()}
+     */
+    PreLoad,
+    /**
+     * Checking every class, method, and field and planning the Strips
+     */
+    Scan,
+    /**
+     * Applying the planned Strips to their targets
+     */
+    Strip,
+    /**
+     * Removing the private members left unused by the Strips, if {@link StripperPlugin#treeShake()} is enabled
+     */
+    Shake,
+    /**
+     * {@link StripperPlugin#onFinish()}
+     */
+    Finish,
+}
@@ -1,13 +1,16 @@
 package com.github.tatercertified.asm_stripper.api;
 
-import com.github.tatercertified.asm_stripper.ASMStripper;
 import com.github.tatercertified.asm_stripper.backend.util.AbstractNode;
 import com.github.tatercertified.asm_stripper.backend.util.JarUtils;
 import com.github.tatercertified.asm_stripper.backend.util.StripProcessor;
+import com.github.tatercertified.asm_stripper.backend.util.TargetCache;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.tree.ClassNode;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Configures the ASM Stripper environment
@@ -24,20 +27,104 @@ public interface StripperPlugin {
 
     /**
      * First entrypoint for ASM Stripper
-     * @return a list of all ClassNodes
+     * @return a list of all Strippable ClassNodes
      */
     default List<ClassNode> init() {
-        if (ASMStripper.VERBOSE) {
-            System.out.println("Stripper Init");
+        JarUtils.setJarPathFromClass(this.getClass());
+        JarUtils.setScanRoots(this.getScanRoots());
+        try {
+            return JarUtils.getClassNodes(this.parallelScan(), this.getIndexPath());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
+    }
+
+    /**
+     * Streaming variant of {@link StripperPlugin#init()}, handing each Strippable ClassNode to a sink as soon as it is parsed.<p>
+     * The scan keeps no list of the nodes, so a node is released once the sink returns unless the sink keeps it
+     * @param sink Receives every Strippable ClassNode, see {@link JarUtils#forEachClassNode}
+     */
+    default void init(Consumer<ClassNode> sink) {
         JarUtils.setJarPathFromClass(this.getClass());
+        JarUtils.setScanRoots(this.getScanRoots());
         try {
-            return JarUtils.getClassNodes();
+            JarUtils.forEachClassNode(this.parallelScan(), this.getIndexPath(), sink);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * If {@link StripperPlugin#strip()} should check each class while the jar is scanned through {@link StripperPlugin#init(Consumer)},
+     * instead of reading every Strippable class with {@link StripperPlugin#init()} first.<p>
+     * Only the classes the Strips still need, such as Mixins and targets, stay in memory, so peak heap no longer grows with the jar.
+     * {@link StripperPlugin#preLoad()} is called before the jar is read, and {@link StripperPlugin#preStrip} is called during the scan.
+     * Every call still happens on the thread running {@link StripperPlugin#strip()}, as {@link StripperPlugin#parallelScan()}
+     * only parses the classes on other threads, a few classes ahead of the check
+     * @return True to stream the scan
+     */
+    default boolean streamScan() {
+        return false;
+    }
+
+    /**
+     * If the jar should be scanned on all cores during {@link StripperPlugin#init()}
+     * @return True to scan in parallel
+     */
+    default boolean parallelScan() {
+        return false;
+    }
+
+    /**
+     * Other jars and class directories scanned along with this plugin's jar, such as the other mods of a modpack.<p>
+     * All roots are scanned in one parallel pass and planned as one, so Strips can cross jars.
+     * While any roots are given, {@link StripperPlugin#getIndexPath()} is not used
+     * @return Paths to jars or class directories
+     */
+    default List<Path> getScanRoots() {
+        return List.of();
+    }
+
+    /**
+     * Where the {@link com.github.tatercertified.asm_stripper.backend.util.StripIndex} is cached between launches.<p>
+     * While the jar is unchanged, the index is replayed instead of scanning the whole jar
+     * @return Path of the index file, or null to scan every launch
+     */
+    @Nullable
+    default Path getIndexPath() {
+        return null;
+    }
+
+    /**
+     * How many resolved target classes are kept in the {@link com.github.tatercertified.asm_stripper.backend.util.TargetCache} during a strip
+     * @return Maximum number of cached targets
+     */
+    default int targetCacheSize() {
+        return TargetCache.DEFAULT_SIZE;
+    }
+
+    /**
+     * If Mixin targets should be stripped when Mixin transforms them, instead of during {@link StripperPlugin#strip()}.<p>
+     * Lazy Strips are applied by calling {@link com.github.tatercertified.asm_stripper.ASMStripper#applyLazyStrips(String, ClassNode)}
+     * from {@link org.spongepowered.asm.mixin.extensibility.IMixinConfigPlugin#postApply}, so targets that never load are never read or edited.
+     * Targets set with altClassPath are not transformed by a Mixin, so they are still stripped eagerly
+     * @return True to strip Mixin targets lazily
+     */
+    default boolean lazy() {
+        return false;
+    }
+
+    /**
+     * If private methods and fields that only the stripped code used should be removed from the targets afterwards.<p>
+     * Members are only removed if they were reachable before stripping and are not anymore, see
+     * {@link com.github.tatercertified.asm_stripper.backend.util.TreeShaker}.
+     * Mixin targets are not shaken, as Mixins of other mods may still name their private members
+     * @return True to shake the targets after stripping
+     */
+    default boolean treeShake() {
+        return false;
+    }
+
     /**
      * Called before any stripping occurs
      */
@@ -56,17 +143,12 @@ public interface StripperPlugin {
      * your {@link org.spongepowered.asm.mixin.extensibility.IMixinConfigPlugin} instance
      */
     default void strip() {
-        if (ASMStripper.VERBOSE) {
-            System.out.println("Stripper Started");
-        }
         StripProcessor.processStrips(this);
-        if (ASMStripper.VERBOSE) {
-            System.out.println("Stripper Ended");
-        }
     }
 
     /**
-     * Called after a strip has completed
+     * Called after a strip has completed.<p>
+     * In {@link StripperPlugin#lazy()} mode, Mixin targets are only edited later, when they are transformed
      * @param node AbstractNode that was stripped
      * @param type The type of Strip
      */
@@ -0,0 +1,50 @@
+package com.github.tatercertified.asm_stripper.backend.jfr;
+
+import com.github.tatercertified.asm_stripper.api.StripPhase;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event spanning a {@link StripPhase} of a Strip run.<p>
+ * Phases of one run follow each other on the same thread, so the open event of each phase is kept per thread
+ */
+@Name("asm_stripper.Phase")
+@Label("Strip Phase")
+@Category("ASM Stripper")
+@Description("A phase of a Strip run")
+public final class PhaseEvent extends Event {
+    private static final ThreadLocal<PhaseEvent[]> OPEN = ThreadLocal.withInitial(() -> new PhaseEvent[StripPhase.values().length]);
+
+    @Label("Phase")
+    String phase;
+
+    /**
+     * Opens the event of a phase if JFR is recording it
+     * @param phase The phase
+     */
+    public static void begin(StripPhase phase) {
+        PhaseEvent event = new PhaseEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.phase = phase.name();
+        event.begin();
+        OPEN.get()[phase.ordinal()] = event;
+    }
+
+    /**
+     * Commits the open event of a phase, if there is one
+     * @param phase The phase
+     */
+    public static void end(StripPhase phase) {
+        PhaseEvent[] open = OPEN.get();
+        PhaseEvent event = open[phase.ordinal()];
+        if (event != null) {
+            open[phase.ordinal()] = null;
+            event.commit();
+        }
+    }
+}
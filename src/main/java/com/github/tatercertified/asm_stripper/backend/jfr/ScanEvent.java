@@ -0,0 +1,29 @@
+package com.github.tatercertified.asm_stripper.backend.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event spanning a scan of a jar or class directory for Strippable classes
+ */
+@Name("asm_stripper.Scan")
+@Label("Strippable Scan")
+@Category("ASM Stripper")
+@Description("Reading a jar or class directory into the ClassNodes of its Strippable classes")
+public final class ScanEvent extends Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Roots")
+    @Description("Number of jars and class directories scanned together")
+    public int roots;
+
+    @Label("Strippable Classes")
+    public int strippableClasses;
+
+    @Label("Parallel")
+    public boolean parallel;
+}
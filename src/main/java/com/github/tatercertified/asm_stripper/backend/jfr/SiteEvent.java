@@ -0,0 +1,50 @@
+package com.github.tatercertified.asm_stripper.backend.jfr;
+
+import com.github.tatercertified.asm_stripper.api.StripType;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for a single usage of a stripped class or member being removed from a target method
+ */
+@Name("asm_stripper.Site")
+@Label("Strip Site")
+@Category("ASM Stripper")
+@Description("A usage of a stripped class or member removed from a target")
+@StackTrace(false)
+public final class SiteEvent extends Event {
+    @Label("Strip Type")
+    String stripType;
+
+    @Label("Stripped")
+    @Description("The stripped class, or the owner, name, and descriptor of the stripped member")
+    String stripped;
+
+    @Label("Target Class")
+    String targetClass;
+
+    @Label("Target Method")
+    String targetMethod;
+
+    /**
+     * Commits a site event if JFR is recording it
+     * @param type Which stripper removed the site
+     * @param stripped The stripped class or member
+     * @param targetClass Internal name of the class containing the site
+     * @param targetMethod Name of the method containing the site
+     */
+    public static void commit(StripType type, String stripped, String targetClass, String targetMethod) {
+        SiteEvent event = new SiteEvent();
+        if (event.shouldCommit()) {
+            event.stripType = type.name();
+            event.stripped = stripped;
+            event.targetClass = targetClass;
+            event.targetMethod = targetMethod;
+            event.commit();
+        }
+    }
+}
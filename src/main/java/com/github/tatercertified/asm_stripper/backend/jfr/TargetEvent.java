@@ -0,0 +1,46 @@
+package com.github.tatercertified.asm_stripper.backend.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event spanning the application of every Strip aimed at one target class
+ */
+@Name("asm_stripper.Target")
+@Label("Strip Target")
+@Category("ASM Stripper")
+@Description("Applying the Strips of a target class")
+public final class TargetEvent extends Event {
+    @Label("Target Class")
+    public String targetClass;
+
+    @Label("Mode")
+    @Description("Tree when a ClassNode is edited, Visitor when class bytes are streamed")
+    public String mode;
+
+    @Label("Stripped Types")
+    public int types;
+
+    @Label("Stripped Methods")
+    public int methods;
+
+    @Label("Stripped Fields")
+    public int fields;
+
+    @Label("Instructions Removed")
+    public int instructionsRemoved;
+
+    @Label("Bytes In")
+    @Description("Size of the class before stripping, only known in Visitor mode")
+    @DataAmount
+    public long bytesIn;
+
+    @Label("Bytes Out")
+    @Description("Size of the class after stripping, only known in Visitor mode")
+    @DataAmount
+    public long bytesOut;
+}
@@ -1,10 +1,17 @@
 package com.github.tatercertified.asm_stripper.backend.stripper;
 
-import com.github.tatercertified.asm_stripper.ASMStripper;
+import com.github.tatercertified.asm_stripper.api.StripType;
+import com.github.tatercertified.asm_stripper.backend.jfr.SiteEvent;
+import com.github.tatercertified.asm_stripper.backend.util.MethodEditor;
+import com.github.tatercertified.asm_stripper.backend.util.StripEvents;
+import com.github.tatercertified.asm_stripper.backend.util.StripPlan;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 public class ClassStripper {
     /**
@@ -13,57 +20,121 @@ public class ClassStripper {
      * @param allClasses Classes where the stripped class is referenced
      */
     public static void stripClass(ClassNode targetClass, List<ClassNode> allClasses) {
-        if (ASMStripper.VERBOSE) {
-            System.out.println("Stripping Class: " + targetClass.name);
+        if (StripEvents.isDebugEnabled()) {
+            StripEvents.debug("Stripping Class: " + targetClass.name);
         }
 
         // Remove all references to this class in other classes
+        StripPlan plan = new StripPlan();
         for (ClassNode classNode : allClasses) {
-            removeTypeUsages(classNode, targetClass.name);
+            plan.target(classNode).stripType(targetClass.name);
         }
+        plan.apply();
 
-        if (ASMStripper.VERBOSE) {
-            System.out.println("Finished Stripping Class: " + targetClass.name);
+        if (StripEvents.isDebugEnabled()) {
+            StripEvents.debug("Finished Stripping Class: " + targetClass.name);
         }
     }
 
-    private static void removeTypeUsages(ClassNode classNode, String targetInternalName) {
-        // Remove fields of the target type
-        classNode.fields.removeIf(field -> field.desc.contains("L" + targetInternalName + ";"));
+    /**
+     * Removes fields whose type references any of the stripped classes
+     * @param classNode Class to remove the fields from
+     * @param targetInternalNames Internal names of the stripped classes
+     */
+    public static void removeFields(ClassNode classNode, Set<String> targetInternalNames) {
+        classNode.fields.removeIf(field -> isStrippedField(field.desc, targetInternalNames));
+    }
 
-        for (MethodNode method : classNode.methods) {
-            InsnList instructions = method.instructions;
-            List<AbstractInsnNode> toRemove = new ArrayList<>();
+    /**
+     * Checks if a field's type references any of the stripped classes
+     * @param descriptor Descriptor of the field
+     * @param targetInternalNames Internal names of the stripped classes
+     * @return True if the field should be removed
+     */
+    public static boolean isStrippedField(String descriptor, Set<String> targetInternalNames) {
+        for (String targetInternalName : targetInternalNames) {
+            if (descriptor.contains("L" + targetInternalName + ";")) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-            for (AbstractInsnNode insn : instructions) {
-                if (insn instanceof TypeInsnNode typeInsn) {
-                    if (typeInsn.desc.equals(targetInternalName)) {
-                        if (ASMStripper.VERBOSE) {
-                            System.out.println("Removing type usage in method " + method.name + ": " + typeInsn.desc);
-                        }
-                        toRemove.add(typeInsn);
-                    }
-                } else if (insn instanceof MethodInsnNode methodInsn) {
-                    if (methodInsn.owner.equals(targetInternalName)) {
-                        if (ASMStripper.VERBOSE) {
-                            System.out.println("Removing method call to " + methodInsn.owner + " in method " + method.name);
-                        }
-                        toRemove.add(methodInsn);
-                    }
-                } else if (insn instanceof FieldInsnNode fieldInsn) {
-                    if (fieldInsn.owner.equals(targetInternalName)) {
-                        if (ASMStripper.VERBOSE) {
-                            System.out.println("Removing field access to " + fieldInsn.owner + " in method " + method.name);
-                        }
-                        toRemove.add(fieldInsn);
-                    }
+    /**
+     * Marks an instruction that uses a stripped class for removal, along with the instructions producing its operands.<p>
+     * Instructions leaving a value behind are replaced with the default value of its type, so the stack stays balanced
+     * @param editor Editor of the method containing the instruction
+     * @param insn A {@link TypeInsnNode}, {@link MethodInsnNode}, or {@link FieldInsnNode} referencing the stripped class
+     */
+    public static void collectTypeUsage(MethodEditor editor, AbstractInsnNode insn) {
+        MethodNode method = editor.getMethod();
+        switch (insn) {
+            case TypeInsnNode typeInsn -> {
+                if (StripEvents.isDebugEnabled()) {
+                    StripEvents.debug("Removing type usage in method " + method.name + ": " + typeInsn.desc);
+                }
+                SiteEvent.commit(StripType.Class, typeInsn.desc, editor.getOwner(), method.name);
+                editor.removeWithOperands(insn, operands(insn.getOpcode(), typeInsn.desc, null), result(insn.getOpcode(), typeInsn.desc, null));
+            }
+            case MethodInsnNode methodInsn -> {
+                if (StripEvents.isDebugEnabled()) {
+                    StripEvents.debug("Removing method call to " + methodInsn.owner + " in method " + method.name);
+                }
+                SiteEvent.commit(StripType.Class, methodInsn.owner, editor.getOwner(), method.name);
+                editor.removeWithOperands(insn, operands(insn.getOpcode(), methodInsn.owner, methodInsn.desc), result(insn.getOpcode(), methodInsn.owner, methodInsn.desc));
+            }
+            case FieldInsnNode fieldInsn -> {
+                if (StripEvents.isDebugEnabled()) {
+                    StripEvents.debug("Removing field access to " + fieldInsn.owner + "." + fieldInsn.name + " in method " + method.name);
                 }
+                SiteEvent.commit(StripType.Class, fieldInsn.owner, editor.getOwner(), method.name);
+                editor.removeWithOperands(insn, operands(insn.getOpcode(), fieldInsn.owner, fieldInsn.desc), result(insn.getOpcode(), fieldInsn.owner, fieldInsn.desc));
             }
+            default -> editor.remove(insn);
+        }
+    }
 
-            // Remove instructions
-            for (AbstractInsnNode insn : toRemove) {
-                instructions.remove(insn);
+    /**
+     * Drops an instruction that uses a stripped class while it is streamed, the visitor version of {@link #collectTypeUsage}
+     * @param visitor Visitor of the method containing the instruction
+     * @param opcode Opcode of the instruction
+     * @param owner Internal name of the stripped class, or of the class declaring the accessed field
+     * @param descriptor Descriptor of the called method or accessed field, or null for type instructions
+     */
+    public static void visitTypeUsage(StripMethodVisitor visitor, int opcode, String owner, @Nullable String descriptor) {
+        if (StripEvents.isDebugEnabled()) {
+            if (opcode >= Opcodes.INVOKEVIRTUAL && opcode <= Opcodes.INVOKEINTERFACE) {
+                StripEvents.debug("Removing method call to " + owner + " in method " + visitor.getName());
+            } else if (opcode >= Opcodes.GETSTATIC && opcode <= Opcodes.PUTFIELD) {
+                StripEvents.debug("Removing field access to " + owner + " in method " + visitor.getName());
+            } else {
+                StripEvents.debug("Removing type usage in method " + visitor.getName() + ": " + owner);
             }
         }
+        SiteEvent.commit(StripType.Class, owner, visitor.getOwner(), visitor.getName());
+        visitor.removeWithOperands(operands(opcode, owner, descriptor), result(opcode, owner, descriptor));
+    }
+
+    private static Type[] operands(int opcode, String owner, @Nullable String descriptor) {
+        return switch (opcode) {
+            case Opcodes.NEW, Opcodes.GETSTATIC -> new Type[0];
+            case Opcodes.ANEWARRAY -> new Type[]{Type.INT_TYPE};
+            case Opcodes.CHECKCAST, Opcodes.INSTANCEOF -> new Type[]{Type.getObjectType("java/lang/Object")};
+            case Opcodes.PUTSTATIC -> new Type[]{Type.getType(descriptor)};
+            case Opcodes.GETFIELD -> new Type[]{Type.getObjectType(owner)};
+            case Opcodes.PUTFIELD -> new Type[]{Type.getObjectType(owner), Type.getType(descriptor)};
+            default -> MethodStripper.operands(opcode, owner, descriptor);
+        };
+    }
+
+    private static Type result(int opcode, String owner, @Nullable String descriptor) {
+        return switch (opcode) {
+            case Opcodes.NEW, Opcodes.CHECKCAST -> Type.getObjectType(owner);
+            case Opcodes.ANEWARRAY -> Type.getType("[" + Type.getObjectType(owner).getDescriptor());
+            case Opcodes.INSTANCEOF -> Type.INT_TYPE;
+            case Opcodes.GETSTATIC, Opcodes.GETFIELD -> Type.getType(descriptor);
+            case Opcodes.PUTSTATIC, Opcodes.PUTFIELD -> Type.VOID_TYPE;
+            default -> Type.getReturnType(descriptor);
+        };
     }
 }
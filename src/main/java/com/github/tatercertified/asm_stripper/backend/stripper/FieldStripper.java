@@ -1,12 +1,14 @@
 package com.github.tatercertified.asm_stripper.backend.stripper;
 
-import com.github.tatercertified.asm_stripper.ASMStripper;
+import com.github.tatercertified.asm_stripper.api.StripType;
+import com.github.tatercertified.asm_stripper.backend.jfr.SiteEvent;
+import com.github.tatercertified.asm_stripper.backend.util.MethodEditor;
+import com.github.tatercertified.asm_stripper.backend.util.StripEvents;
+import com.github.tatercertified.asm_stripper.backend.util.StripPlan;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class FieldStripper {
     /**
      * Removes a field from a class
@@ -14,126 +16,81 @@ public class FieldStripper {
      * @param parent Parent class
      */
     public static void stripField(FieldNode node, ClassNode parent) {
-        if (ASMStripper.VERBOSE) {
-            System.out.println("Beginning Stripping Field: " + node.name);
+        if (StripEvents.isDebugEnabled()) {
+            StripEvents.debug("Beginning Stripping Field: " + node.name);
         }
 
-        String internalName = parent.name.replace('.', '/');
-        stripStaticFieldInitializers(parent, node.desc, internalName);
-        removeStaticFieldUsagesInClinit(parent, node.desc, internalName);
+        StripPlan plan = new StripPlan();
+        plan.target(parent).stripField(new StripPlan.Key(parent.name, node.name, node.desc));
+        plan.apply();
 
-        if (ASMStripper.VERBOSE) {
-            System.out.println("Finished Stripping Field: " + node.name);
+        if (StripEvents.isDebugEnabled()) {
+            StripEvents.debug("Finished Stripping Field: " + node.name);
         }
     }
 
-    private static void stripStaticFieldInitializers(ClassNode classNode, String fieldDesc, String internalClassName) {
-        for (MethodNode method : classNode.methods) {
-            if (!method.name.equals("<clinit>")) {
-                continue;
-            }
-
-            InsnList instructions = method.instructions;
-            List<AbstractInsnNode> toRemove = new ArrayList<>();
-
-            for (AbstractInsnNode insn : instructions) {
-                if (insn instanceof FieldInsnNode fieldInsn &&
-                        fieldInsn.getOpcode() == Opcodes.PUTSTATIC &&
-                        fieldInsn.owner.equals(internalClassName) &&
-                        fieldDesc.equals(fieldInsn.desc)) {
-
-                    if (ASMStripper.VERBOSE) {
-                        System.out.println("Stripping static field initializer: " + fieldInsn.name);
-                    }
-
-                    AbstractInsnNode start = insn.getPrevious();
-
-                    int stackDepth = 1;
-                    int insnLimit = 32;
-                    while (start != null && insnLimit-- > 0) {
-                        if (start instanceof InsnNode || start instanceof MethodInsnNode ||
-                                start instanceof LdcInsnNode || start instanceof IntInsnNode ||
-                                start instanceof VarInsnNode || start instanceof TypeInsnNode) {
-                            // Heuristic: this might push to the stack
-                            stackDepth--;
-                        }
-
-                        if (stackDepth == 0) {
-                            break;
-                        }
+    /**
+     * Marks an access to a stripped field for removal, in any method of any class.<p>
+     * Assignments are removed along with the instructions computing the receiver and the value,
+     * reads are replaced with the default value of the field's type
+     * @param editor Editor of the method
+     * @param fieldInsn Access to the stripped field
+     */
+    public static void collectFieldSite(MethodEditor editor, FieldInsnNode fieldInsn) {
+        SiteEvent.commit(StripType.Field, fieldInsn.owner + "." + fieldInsn.name + fieldInsn.desc, editor.getOwner(), editor.getMethod().name);
+        debugFieldSite(fieldInsn.getOpcode(), fieldInsn.name);
+        editor.removeWithOperands(fieldInsn, operands(fieldInsn.getOpcode(), fieldInsn.owner, fieldInsn.desc), result(fieldInsn.getOpcode(), fieldInsn.desc));
+    }
 
-                        start = start.getPrevious();
-                    }
+    /**
+     * Handles an access to a stripped field while it is streamed, the visitor version of {@link #collectFieldSite}
+     * @param visitor Visitor of the method
+     * @param opcode Opcode of the access
+     * @param owner Internal name of the class declaring the stripped field
+     * @param name Name of the stripped field
+     * @param descriptor Descriptor of the stripped field
+     */
+    public static void visitFieldSite(StripMethodVisitor visitor, int opcode, String owner, String name, String descriptor) {
+        debugFieldSite(opcode, name);
+        visitor.removeWithOperands(operands(opcode, owner, descriptor), result(opcode, descriptor));
+        SiteEvent.commit(StripType.Field, owner + "." + name + descriptor, visitor.getOwner(), visitor.getName());
+    }
 
-                    // Collect all instructions from start to end
-                    AbstractInsnNode cur = (start != null) ? start.getNext() : instructions.getFirst();
-                    while (cur != null && cur != insn.getNext()) {
-                        toRemove.add(cur);
-                        cur = cur.getNext();
-                    }
-                    break;
-                }
-            }
+    private static Type[] operands(int opcode, String owner, String descriptor) {
+        return switch (opcode) {
+            case Opcodes.PUTSTATIC -> new Type[]{Type.getType(descriptor)};
+            case Opcodes.GETFIELD -> new Type[]{Type.getObjectType(owner)};
+            case Opcodes.PUTFIELD -> new Type[]{Type.getObjectType(owner), Type.getType(descriptor)};
+            default -> new Type[0];
+        };
+    }
 
-            for (AbstractInsnNode insn : toRemove) {
-                instructions.remove(insn);
-            }
+    private static Type result(int opcode, String descriptor) {
+        return opcode == Opcodes.GETSTATIC || opcode == Opcodes.GETFIELD ? Type.getType(descriptor) : Type.VOID_TYPE;
+    }
 
-            // Ensure <clinit> ends correctly
-            AbstractInsnNode last = instructions.getLast();
-            if (last == null || last.getOpcode() != Opcodes.RETURN) {
-                instructions.add(new InsnNode(Opcodes.RETURN));
+    private static void debugFieldSite(int opcode, String name) {
+        if (StripEvents.isDebugEnabled()) {
+            switch (opcode) {
+                case Opcodes.PUTSTATIC -> StripEvents.debug("Stripping static field initializer: " + name);
+                case Opcodes.GETSTATIC -> StripEvents.debug("Removing usage of static field: " + name);
+                case Opcodes.PUTFIELD -> StripEvents.debug("Stripping field assignment: " + name);
+                default -> StripEvents.debug("Removing usage of field: " + name);
             }
         }
     }
 
-    private static void removeStaticFieldUsagesInClinit(ClassNode classNode, String fieldDesc, String internalName) {
-        for (MethodNode method : classNode.methods) {
-            if (!method.name.equals("<clinit>")) continue;
-
-            InsnList insns = method.instructions;
-
-            for (AbstractInsnNode insn : insns) {
-                if (insn instanceof FieldInsnNode fieldInsn &&
-                        fieldInsn.owner.equals(internalName) &&
-                        fieldDesc.equals(fieldInsn.desc)) {
-
-                    List<AbstractInsnNode> toRemove = new ArrayList<>();
-
-                    if (fieldInsn.getOpcode() == Opcodes.GETSTATIC) {
-                        // Possible read and use — try to find an array store like IASTORE, DASTORE, etc.
-                        AbstractInsnNode current = insn;
-                        toRemove.add(current);
-                        for (int j = 0; j < 6 && current != null; j++) {
-                            current = current.getNext();
-                            if (current != null) toRemove.add(current);
-                            if (current instanceof InsnNode) {
-                                int op = current.getOpcode();
-                                if (op >= Opcodes.IASTORE && op <= Opcodes.SASTORE) {
-                                    break;
-                                }
-                            }
-                        }
-                    } else if (fieldInsn.getOpcode() == Opcodes.PUTSTATIC) {
-                        // Assigning to the field, remove backward up to 3 or so instructions, and the PUTSTATIC
-                        toRemove.add(fieldInsn);
-                        AbstractInsnNode prev = fieldInsn.getPrevious();
-                        for (int j = 0; j < 3 && prev != null; j++) {
-                            toRemove.addFirst(prev);
-                            prev = prev.getPrevious();
-                        }
-                    }
-
-                    if (ASMStripper.VERBOSE) {
-                        System.out.println("Removing usage of static field: " + fieldInsn.name);
-                    }
-                    for (AbstractInsnNode toDel : toRemove) {
-                        insns.remove(toDel);
-                    }
-
-                    break;
-                }
-            }
+    /**
+     * Ensures {@code <clinit>} still ends correctly after instructions were removed
+     * @param method The {@code <clinit>} method
+     * @return True if a {@code RETURN} was added
+     */
+    public static boolean ensureReturn(MethodNode method) {
+        AbstractInsnNode last = method.instructions.getLast();
+        if (last == null || last.getOpcode() != Opcodes.RETURN) {
+            method.instructions.add(new InsnNode(Opcodes.RETURN));
+            return true;
         }
+        return false;
     }
 }
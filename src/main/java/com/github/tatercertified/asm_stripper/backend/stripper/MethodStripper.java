@@ -1,13 +1,14 @@
 package com.github.tatercertified.asm_stripper.backend.stripper;
 
-import com.github.tatercertified.asm_stripper.ASMStripper;
+import com.github.tatercertified.asm_stripper.api.StripType;
+import com.github.tatercertified.asm_stripper.backend.jfr.SiteEvent;
+import com.github.tatercertified.asm_stripper.backend.util.MethodEditor;
+import com.github.tatercertified.asm_stripper.backend.util.StripEvents;
+import com.github.tatercertified.asm_stripper.backend.util.StripPlan;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class MethodStripper {
     /**
      * Removes a method in a class
@@ -15,74 +16,59 @@ public class MethodStripper {
      * @param parent Parent class
      */
     public static void stripMethod(MethodNode node, ClassNode parent) {
-        if (ASMStripper.VERBOSE) {
-            System.out.println("Starting Stripping Method: " + node.name);
+        if (StripEvents.isDebugEnabled()) {
+            StripEvents.debug("Starting Stripping Method: " + node.name);
         }
 
-        String internalName = parent.name.replace('.', '/');
-        removeMethodUsages(parent, node.name, node.desc, internalName);
+        StripPlan plan = new StripPlan();
+        plan.target(parent).stripMethod(new StripPlan.Key(parent.name, node.name, node.desc));
+        plan.apply();
 
-        if (ASMStripper.VERBOSE) {
-            System.out.println("Finished Stripping Method: " + node.name);
+        if (StripEvents.isDebugEnabled()) {
+            StripEvents.debug("Finished Stripping Method: " + node.name);
         }
     }
 
-    private static void removeMethodUsages(ClassNode classNode, String methodName, String methodDesc, String internalClassName) {
-        for (MethodNode method : classNode.methods) {
-            InsnList instructions = method.instructions;
-            List<AbstractInsnNode> toRemove = new ArrayList<>();
-
-            for (AbstractInsnNode insn : instructions) {
-                if (insn instanceof MethodInsnNode methodInsn &&
-                        methodInsn.owner.equals(internalClassName) &&
-                        methodInsn.name.equals(methodName) &&
-                        methodInsn.desc.equals(methodDesc)) {
-
-                    if (ASMStripper.VERBOSE) {
-                        System.out.println("Stripping method call in " + method.name + ": " + methodInsn.name + methodInsn.desc);
-                    }
-
-                    AbstractInsnNode start = insn.getPrevious();
-
-                    int stackDepth = getStackEffect(methodInsn);
-                    int insnLimit = 32;
-
-                    while (start != null && insnLimit-- > 0 && stackDepth > 0) {
-                        if (pushesToStack(start)) {
-                            stackDepth--;
-                        }
-                        start = start.getPrevious();
-                    }
-
-                    // Collect all instructions from start to insn
-                    AbstractInsnNode cur = (start != null) ? start.getNext() : instructions.getFirst();
-                    while (cur != null && cur != insn.getNext()) {
-                        toRemove.add(cur);
-                        cur = cur.getNext();
-                    }
-                }
-            }
-
-            // Remove instructions
-            for (AbstractInsnNode insn : toRemove) {
-                instructions.remove(insn);
-            }
+    /**
+     * Marks a call to a stripped method, and the instructions that load its arguments, for removal.<p>
+     * Non-void calls leave a default value behind, so the code using the result stays valid
+     * @param editor Editor of the method containing the call
+     * @param methodInsn Call to the stripped method
+     */
+    public static void collectCallSite(MethodEditor editor, MethodInsnNode methodInsn) {
+        if (StripEvents.isDebugEnabled()) {
+            StripEvents.debug("Stripping method call in " + editor.getMethod().name + ": " + methodInsn.name + methodInsn.desc);
         }
+        SiteEvent.commit(StripType.Method, methodInsn.owner + "." + methodInsn.name + methodInsn.desc, editor.getOwner(), editor.getMethod().name);
+
+        editor.removeWithOperands(methodInsn, operands(methodInsn.getOpcode(), methodInsn.owner, methodInsn.desc), Type.getReturnType(methodInsn.desc));
     }
 
-    private static boolean pushesToStack(AbstractInsnNode insn) {
-        // Heuristic: these instructions likely push something to the stack
-        return insn instanceof InsnNode ||
-                insn instanceof IntInsnNode ||
-                insn instanceof LdcInsnNode ||
-                insn instanceof VarInsnNode ||
-                insn instanceof TypeInsnNode ||
-                insn instanceof MethodInsnNode;
+    /**
+     * Drops a call to a stripped method while it is streamed, the visitor version of {@link #collectCallSite}.<p>
+     * Only the constants and local loads directly feeding the call are dropped with it, other arguments are popped
+     * @param visitor Visitor of the method containing the call
+     * @param opcode Opcode of the call
+     * @param owner Internal name of the class declaring the stripped method
+     * @param name Name of the stripped method
+     * @param descriptor Descriptor of the stripped method
+     */
+    public static void visitCallSite(StripMethodVisitor visitor, int opcode, String owner, String name, String descriptor) {
+        if (StripEvents.isDebugEnabled()) {
+            StripEvents.debug("Stripping method call in " + visitor.getName() + ": " + name + descriptor);
+        }
+        SiteEvent.commit(StripType.Method, owner + "." + name + descriptor, visitor.getOwner(), visitor.getName());
+        visitor.removeWithOperands(operands(opcode, owner, descriptor), Type.getReturnType(descriptor));
     }
 
-    private static int getStackEffect(MethodInsnNode methodInsn) {
-        // Calculate how many arguments this method expects to pop off the stack
-        int argCount = Type.getArgumentTypes(methodInsn.desc).length;
-        return methodInsn.getOpcode() == Opcodes.INVOKESTATIC ? argCount : argCount + 1;
+    static Type[] operands(int opcode, String owner, String descriptor) {
+        Type[] arguments = Type.getArgumentTypes(descriptor);
+        if (opcode == Opcodes.INVOKESTATIC) {
+            return arguments;
+        }
+        Type[] operands = new Type[arguments.length + 1];
+        operands[0] = Type.getObjectType(owner);
+        System.arraycopy(arguments, 0, operands, 1, arguments.length);
+        return operands;
     }
 }
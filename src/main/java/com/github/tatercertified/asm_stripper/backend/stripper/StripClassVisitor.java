@@ -0,0 +1,85 @@
+package com.github.tatercertified.asm_stripper.backend.stripper;
+
+import com.github.tatercertified.asm_stripper.api.StripCounter;
+import com.github.tatercertified.asm_stripper.backend.util.StripEvents;
+import com.github.tatercertified.asm_stripper.backend.util.StripPlan;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Applies the Strips of a {@link StripPlan.Target} while a class is streamed from a ClassReader to a ClassWriter.<p>
+ * Stripped declarations and fields of stripped types are dropped, and every method goes through a {@link StripMethodVisitor}.
+ * No ClassNode is built, so this is the cheapest way to apply a plan to classes that are only read once
+ */
+public final class StripClassVisitor extends ClassVisitor {
+    private final StripPlan.Target target;
+    private String owner;
+    private int removed;
+
+    /**
+     * Creates a visitor for a target
+     * @param next Visitor receiving the stripped class, usually a ClassWriter
+     * @param target Target holding the Strips of the class
+     */
+    public StripClassVisitor(ClassVisitor next, StripPlan.Target target) {
+        super(Opcodes.ASM9, next);
+        this.target = target;
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        this.owner = name;
+        if (StripEvents.isDebugEnabled()) {
+            StripEvents.debug("Applying " + (this.target.getTypes().size() + this.target.getMethods().size() + this.target.getFields().size()) + " Strips to " + name);
+        }
+        super.visit(version, access, name, signature, superName, interfaces);
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+        if (this.target.getDeclarations().contains(new StripPlan.Key(this.owner, name, descriptor))) {
+            return null;
+        }
+        if (ClassStripper.isStrippedField(descriptor, this.target.getTypes())) {
+            return null;
+        }
+        return super.visitField(access, name, descriptor, signature, value);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        if (this.target.getDeclarations().contains(new StripPlan.Key(this.owner, name, descriptor))) {
+            return null;
+        }
+        MethodVisitor next = super.visitMethod(access, name, descriptor, signature, exceptions);
+        return next == null ? null : new StripMethodVisitor(next, this, name);
+    }
+
+    @Override
+    public void visitEnd() {
+        StripEvents.count(StripCounter.InstructionsRemoved, this.removed);
+        super.visitEnd();
+    }
+
+    /**
+     * Gets how many instructions were removed so far
+     * @return Number of removed instructions
+     */
+    public int getRemoved() {
+        return this.removed;
+    }
+
+    String getOwner() {
+        return this.owner;
+    }
+
+    StripPlan.Target getTarget() {
+        return this.target;
+    }
+
+    void addRemoved(int count) {
+        this.removed += count;
+    }
+}
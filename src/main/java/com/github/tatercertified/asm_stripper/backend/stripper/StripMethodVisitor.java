@@ -0,0 +1,429 @@
+package com.github.tatercertified.asm_stripper.backend.stripper;
+
+import com.github.tatercertified.asm_stripper.backend.util.StripPlan;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.TypePath;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies the Strips of a {@link StripPlan.Target} to a single method as it is streamed.<p>
+ * Instructions computing a value are held back, grouped by the stack value they produce,
+ * until an instruction with any other effect arrives. When that instruction is a stripped call or field access,
+ * the held back values feeding it are dropped with it, and operands coming from anything else are popped.
+ * For straight-line operands, this removes the same instructions as the tree version.
+ * Held back values never cross a label, so the stack is unchanged at every frame and branch target.<p>
+ * A stripped {@code new} is replaced by {@code null}, so frames between it and its constructor call
+ * see {@code null} where they had the uninitialized value
+ */
+public final class StripMethodVisitor extends MethodVisitor {
+    private static final int FLUSH = -1;
+
+    private final StripClassVisitor parent;
+    private final StripPlan.Target target;
+    private final String name;
+    private final List<Value> pending = new ArrayList<>();
+    @Nullable
+    private Label lastLabel;
+    @Nullable
+    private Set<Label> strippedNews;
+
+    /**
+     * Creates a visitor for a method
+     * @param next Visitor receiving the stripped method
+     * @param parent Visitor of the class declaring the method
+     * @param name Name of the method
+     */
+    public StripMethodVisitor(MethodVisitor next, StripClassVisitor parent, String name) {
+        super(Opcodes.ASM9, next);
+        this.parent = parent;
+        this.target = parent.getTarget();
+        this.name = name;
+    }
+
+    @Override
+    public void visitInsn(int opcode) {
+        if (opcode == Opcodes.DUP && !this.pending.isEmpty()) {
+            // new, dup, and the constructor call are held back as a single value
+            Value top = this.pending.getLast();
+            if (top.uninitialized && !top.duplicated) {
+                top.add(() -> super.visitInsn(opcode));
+                top.duplicated = true;
+                return;
+            }
+        }
+        if (!this.hold(pops(opcode), () -> super.visitInsn(opcode))) {
+            super.visitInsn(opcode);
+        }
+    }
+
+    @Override
+    public void visitIntInsn(int opcode, int operand) {
+        int pops = switch (opcode) {
+            case Opcodes.BIPUSH, Opcodes.SIPUSH -> 0;
+            case Opcodes.NEWARRAY -> 1;
+            default -> FLUSH;
+        };
+        if (!this.hold(pops, () -> super.visitIntInsn(opcode, operand))) {
+            super.visitIntInsn(opcode, operand);
+        }
+    }
+
+    @Override
+    public void visitVarInsn(int opcode, int varIndex) {
+        int pops = opcode >= Opcodes.ILOAD && opcode <= Opcodes.ALOAD ? 0 : FLUSH;
+        if (!this.hold(pops, () -> super.visitVarInsn(opcode, varIndex))) {
+            super.visitVarInsn(opcode, varIndex);
+        }
+    }
+
+    @Override
+    public void visitLdcInsn(Object value) {
+        this.hold(0, () -> super.visitLdcInsn(value));
+    }
+
+    @Override
+    public void visitTypeInsn(int opcode, String type) {
+        // Frames name an uninitialized value by the label of its new, which the ClassReader visits right before it
+        Label label = opcode == Opcodes.NEW ? this.lastLabel : null;
+        if (opcode == Opcodes.NEW) {
+            this.lastLabel = null;
+        }
+        if (this.target.getTypes().contains(type)) {
+            if (label != null) {
+                if (this.strippedNews == null) {
+                    this.strippedNews = new HashSet<>();
+                }
+                this.strippedNews.add(label);
+            }
+            ClassStripper.visitTypeUsage(this, opcode, type, null);
+            return;
+        }
+        if (opcode == Opcodes.NEW) {
+            this.flushUninitialized();
+            Value value = new Value();
+            value.add(() -> super.visitTypeInsn(opcode, type));
+            value.uninitialized = true;
+            this.pending.add(value);
+            return;
+        }
+        if (!this.hold(1, () -> super.visitTypeInsn(opcode, type))) {
+            super.visitTypeInsn(opcode, type);
+        }
+    }
+
+    @Override
+    public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+        // Fields of a stripped type are removed from this class, so accessing them is a usage as well
+        if (this.target.getTypes().contains(owner)
+                || owner.equals(this.parent.getOwner()) && ClassStripper.isStrippedField(descriptor, this.target.getTypes())) {
+            ClassStripper.visitTypeUsage(this, opcode, owner, descriptor);
+            return;
+        }
+        if (this.target.getFields().contains(new StripPlan.Key(owner, name, descriptor))) {
+            FieldStripper.visitFieldSite(this, opcode, owner, name, descriptor);
+            return;
+        }
+        int pops = switch (opcode) {
+            case Opcodes.GETSTATIC -> 0;
+            case Opcodes.GETFIELD -> 1;
+            default -> FLUSH;
+        };
+        if (!this.hold(pops, () -> super.visitFieldInsn(opcode, owner, name, descriptor))) {
+            super.visitFieldInsn(opcode, owner, name, descriptor);
+        }
+    }
+
+    @Override
+    public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+        if (this.target.getTypes().contains(owner)) {
+            ClassStripper.visitTypeUsage(this, opcode, owner, descriptor);
+            return;
+        }
+        if (this.target.getMethods().contains(new StripPlan.Key(owner, name, descriptor))) {
+            MethodStripper.visitCallSite(this, opcode, owner, name, descriptor);
+            return;
+        }
+
+        Runnable insn = () -> super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+        int arguments = Type.getArgumentCount(descriptor);
+        if (opcode == Opcodes.INVOKESPECIAL && name.equals("<init>") && this.pending.size() > arguments) {
+            // The constructor completes a held back new and dup into an initialized value
+            Value receiver = this.pending.get(this.pending.size() - arguments - 1);
+            if (receiver.uninitialized && receiver.duplicated && this.canMerge(arguments)) {
+                Value value = this.merge(arguments + 1, insn);
+                value.uninitialized = false;
+                value.duplicated = false;
+                return;
+            }
+        }
+        int pops = Type.getReturnType(descriptor) == Type.VOID_TYPE ? FLUSH : arguments + (opcode == Opcodes.INVOKESTATIC ? 0 : 1);
+        if (!this.hold(pops, insn)) {
+            insn.run();
+        }
+    }
+
+    @Override
+    public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
+        Runnable insn = () -> super.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
+        int pops = Type.getReturnType(descriptor) == Type.VOID_TYPE ? FLUSH : Type.getArgumentCount(descriptor);
+        if (!this.hold(pops, insn)) {
+            insn.run();
+        }
+    }
+
+    @Override
+    public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+        if (!this.hold(numDimensions, () -> super.visitMultiANewArrayInsn(descriptor, numDimensions))) {
+            super.visitMultiANewArrayInsn(descriptor, numDimensions);
+        }
+    }
+
+    @Override
+    public void visitJumpInsn(int opcode, Label label) {
+        this.flush();
+        super.visitJumpInsn(opcode, label);
+    }
+
+    @Override
+    public void visitLabel(Label label) {
+        this.flush();
+        this.lastLabel = label;
+        super.visitLabel(label);
+    }
+
+    @Override
+    public void visitIincInsn(int varIndex, int increment) {
+        this.flush();
+        super.visitIincInsn(varIndex, increment);
+    }
+
+    @Override
+    public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+        this.flush();
+        super.visitTableSwitchInsn(min, max, dflt, labels);
+    }
+
+    @Override
+    public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+        this.flush();
+        super.visitLookupSwitchInsn(dflt, keys, labels);
+    }
+
+    @Override
+    public AnnotationVisitor visitInsnAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+        this.flush();
+        return super.visitInsnAnnotation(typeRef, typePath, descriptor, visible);
+    }
+
+    @Override
+    public void visitFrame(int type, int numLocal, Object[] local, int numStack, Object[] stack) {
+        this.flush();
+        if (this.strippedNews != null) {
+            local = this.initialize(local, numLocal);
+            stack = this.initialize(stack, numStack);
+        }
+        super.visitFrame(type, numLocal, local, numStack, stack);
+    }
+
+    @Override
+    public void visitLineNumber(int line, Label start) {
+        this.flush();
+        super.visitLineNumber(line, start);
+    }
+
+    @Override
+    public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+        this.flush();
+        super.visitTryCatchBlock(start, end, handler, type);
+    }
+
+    @Override
+    public void visitAttribute(Attribute attribute) {
+        this.flush();
+        super.visitAttribute(attribute);
+    }
+
+    @Override
+    public void visitMaxs(int maxStack, int maxLocals) {
+        this.flush();
+        super.visitMaxs(maxStack, maxLocals);
+    }
+
+    @Override
+    public void visitEnd() {
+        this.flush();
+        super.visitEnd();
+    }
+
+    /**
+     * Gets the name of the method being visited
+     * @return Method name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the class declaring the method being visited
+     * @return Internal name of the class
+     */
+    public String getOwner() {
+        return this.parent.getOwner();
+    }
+
+    /**
+     * Drops the instruction being visited along with the held back values it consumes.<p>
+     * Operands without a held back value are popped, and a default value is held back in place of the result
+     * @param operands Types of the stack values the instruction consumes, deepest first
+     * @param result Type of the value the instruction pushes, or {@link Type#VOID_TYPE}
+     */
+    public void removeWithOperands(Type[] operands, Type result) {
+        int dropped = 0;
+        while (dropped < operands.length && dropped < this.pending.size() && !this.pending.get(this.pending.size() - dropped - 1).uninitialized) {
+            dropped++;
+        }
+        int removed = 1;
+        for (int i = 0; i < dropped; i++) {
+            removed += this.pending.removeLast().original;
+        }
+        this.flush();
+        this.parent.addRemoved(removed);
+
+        for (int i = operands.length - dropped - 1; i >= 0; i--) {
+            super.visitInsn(operands[i].getSize() == 2 ? Opcodes.POP2 : Opcodes.POP);
+        }
+        int push = switch (result.getSort()) {
+            case Type.VOID -> Opcodes.NOP;
+            case Type.BOOLEAN, Type.CHAR, Type.BYTE, Type.SHORT, Type.INT -> Opcodes.ICONST_0;
+            case Type.FLOAT -> Opcodes.FCONST_0;
+            case Type.LONG -> Opcodes.LCONST_0;
+            case Type.DOUBLE -> Opcodes.DCONST_0;
+            default -> Opcodes.ACONST_NULL;
+        };
+        if (push != Opcodes.NOP) {
+            // The default is held back as well, so an enclosing stripped call drops it again
+            Value value = new Value();
+            value.insns.add(() -> super.visitInsn(push));
+            this.pending.add(value);
+        }
+    }
+
+    /**
+     * Replaces the uninitialized values of stripped news in a frame with {@code null}, which every copy of them now holds
+     * @param values Local or stack values of the frame
+     * @param count Number of values used
+     * @return Values to visit
+     */
+    private Object[] initialize(Object[] values, int count) {
+        Object[] initialized = values;
+        for (int i = 0; i < count; i++) {
+            if (values[i] instanceof Label label && this.strippedNews.contains(label)) {
+                if (initialized == values) {
+                    initialized = values.clone();
+                }
+                initialized[i] = Opcodes.NULL;
+            }
+        }
+        return initialized;
+    }
+
+    /**
+     * Holds back an instruction that consumes held back values and pushes a single value
+     * @param pops Number of stack values the instruction consumes, or {@link #FLUSH} if it has any other effect
+     * @param insn Replays the instruction
+     * @return True if the instruction was held back, false if it has to be visited now
+     */
+    private boolean hold(int pops, Runnable insn) {
+        if (pops == FLUSH || !this.canMerge(pops)) {
+            this.flush();
+            return false;
+        }
+        this.flushUninitialized();
+        this.merge(pops, insn);
+        return true;
+    }
+
+    private boolean canMerge(int count) {
+        if (count > this.pending.size()) {
+            return false;
+        }
+        for (int i = this.pending.size() - count; i < this.pending.size(); i++) {
+            if (this.pending.get(i).uninitialized) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Value merge(int count, Runnable insn) {
+        Value merged = new Value();
+        List<Value> consumed = this.pending.subList(this.pending.size() - count, this.pending.size());
+        for (Value value : consumed) {
+            merged.insns.addAll(value.insns);
+            merged.original += value.original;
+            merged.uninitialized |= value.uninitialized;
+            merged.duplicated |= value.duplicated;
+        }
+        consumed.clear();
+        merged.add(insn);
+        this.pending.add(merged);
+        return merged;
+    }
+
+    private void flushUninitialized() {
+        // A new without a dup is never completed into a value, so it is visited right away
+        if (!this.pending.isEmpty() && this.pending.getLast().uninitialized && !this.pending.getLast().duplicated) {
+            this.flush();
+        }
+    }
+
+    private void flush() {
+        for (Value value : this.pending) {
+            for (Runnable insn : value.insns) {
+                insn.run();
+            }
+        }
+        this.pending.clear();
+    }
+
+    private static int pops(int opcode) {
+        if (opcode >= Opcodes.ACONST_NULL && opcode <= Opcodes.DCONST_1) {
+            return 0;
+        }
+        if (opcode >= Opcodes.INEG && opcode <= Opcodes.DNEG || opcode >= Opcodes.I2L && opcode <= Opcodes.I2S || opcode == Opcodes.ARRAYLENGTH) {
+            return 1;
+        }
+        if (opcode >= Opcodes.IALOAD && opcode <= Opcodes.SALOAD || opcode >= Opcodes.IADD && opcode <= Opcodes.DREM
+                || opcode >= Opcodes.ISHL && opcode <= Opcodes.LXOR || opcode >= Opcodes.LCMP && opcode <= Opcodes.DCMPG) {
+            return 2;
+        }
+        return FLUSH;
+    }
+
+    /**
+     * Held back instructions producing a single stack value, in visiting order
+     */
+    private static final class Value {
+        private final List<Runnable> insns = new ArrayList<>();
+        private int original;
+        // A new whose constructor was not called yet cannot be consumed by anything else
+        private boolean uninitialized;
+        private boolean duplicated;
+
+        private void add(Runnable insn) {
+            this.insns.add(insn);
+            this.original++;
+        }
+    }
+}
@@ -1,25 +1,16 @@
 package com.github.tatercertified.asm_stripper.backend.util;
 
-import com.github.tatercertified.asm_stripper.ASMStripper;
 import com.github.tatercertified.asm_stripper.api.annotation.Strip;
-import com.github.tatercertified.asm_stripper.api.annotation.Strippable;
-import com.github.tatercertified.asm_stripper.backend.stripper.ClassStripper;
-import com.github.tatercertified.asm_stripper.backend.stripper.FieldStripper;
-import com.github.tatercertified.asm_stripper.backend.stripper.MethodStripper;
 import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
-import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
-import org.spongepowered.asm.service.MixinService;
 
 import java.io.IOException;
 import java.lang.annotation.Annotation;
-import java.lang.annotation.Retention;
-import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -34,6 +25,9 @@ public class AbstractNode {
     private final Object instance;
     @Nullable
     private final AbstractNode parent;
+    @Nullable
+    private AnnotationNode[] knownAnnotations;
+    private int annotationMask = -1;
 
     private AbstractNode(Object instance, @Nullable String nodePath, String nodeName, @Nullable AbstractNode parent, List<AnnotationNode> visibleAnnotations, List<AnnotationNode> invisibleAnnotations) {
         this.instance = instance;
@@ -59,7 +53,18 @@ public class AbstractNode {
      * @return AbstractNode instance
      */
     public static AbstractNode from(MethodNode node, ClassNode parent) {
-        return new AbstractNode(node, node.desc, node.name, AbstractNode.from(parent), node.visibleAnnotations, node.invisibleAnnotations);
+        return AbstractNode.from(node, AbstractNode.from(parent));
+    }
+
+    /**
+     * Gets an AbstractNode from a {@link MethodNode}, sharing an existing parent AbstractNode.<p>
+     * Use this when checking many members of one class, so the parent's Annotations are only classified once
+     * @param node MethodNode instance
+     * @param parent AbstractNode of the class declaring the method
+     * @return AbstractNode instance
+     */
+    public static AbstractNode from(MethodNode node, AbstractNode parent) {
+        return new AbstractNode(node, node.desc, node.name, parent, node.visibleAnnotations, node.invisibleAnnotations);
     }
 
     /**
@@ -68,7 +73,18 @@ public class AbstractNode {
      * @return AbstractNode instance
      */
     public static AbstractNode from(FieldNode node, ClassNode parent) {
-        return new AbstractNode(node, node.desc, node.name, AbstractNode.from(parent), node.visibleAnnotations, node.invisibleAnnotations);
+        return AbstractNode.from(node, AbstractNode.from(parent));
+    }
+
+    /**
+     * Gets an AbstractNode from a {@link FieldNode}, sharing an existing parent AbstractNode.<p>
+     * Use this when checking many members of one class, so the parent's Annotations are only classified once
+     * @param node FieldNode instance
+     * @param parent AbstractNode of the class declaring the field
+     * @return AbstractNode instance
+     */
+    public static AbstractNode from(FieldNode node, AbstractNode parent) {
+        return new AbstractNode(node, node.desc, node.name, parent, node.visibleAnnotations, node.invisibleAnnotations);
     }
 
     /**
@@ -88,17 +104,16 @@ public class AbstractNode {
      */
     @Nullable
     public AnnotationNode getAnnotation(Class<? extends Annotation> annotation) {
-        Retention retention = annotation.getAnnotation(Retention.class);
-        boolean visible;
-        if (retention != null) {
-            visible = retention.value() == RetentionPolicy.RUNTIME;
-        } else {
-            visible = false;
+        KnownAnnotation known = KnownAnnotation.of(annotation);
+        if (known != null) {
+            return this.getAnnotation(known);
         }
-        List<AnnotationNode> annotationNodes = this.getAnnotations(visible);
+
+        List<AnnotationNode> annotationNodes = this.getAnnotations(KnownAnnotation.isVisible(annotation));
         if (annotationNodes != null) {
+            String descriptor = KnownAnnotation.descriptorOf(annotation);
             for (AnnotationNode annotationNode : annotationNodes) {
-                if (annotationNode.desc.equals(annotation.descriptorString())) {
+                if (annotationNode.desc.equals(descriptor)) {
                     return annotationNode;
                 }
             }
@@ -106,6 +121,43 @@ public class AbstractNode {
         return null;
     }
 
+    /**
+     * Gets the AnnotationNode for a recognized Annotation type
+     * @param annotation KnownAnnotation entry
+     * @return AnnotationNode for the type
+     */
+    @Nullable
+    public AnnotationNode getAnnotation(KnownAnnotation annotation) {
+        return (this.getAnnotationMask() & annotation.getMask()) != 0 ? this.knownAnnotations[annotation.ordinal()] : null;
+    }
+
+    /**
+     * Checks for a recognized Annotation without scanning the Annotation lists
+     * @param annotation KnownAnnotation entry
+     * @return True if the Annotation is present on this AbstractNode
+     */
+    public boolean hasAnnotation(KnownAnnotation annotation) {
+        return (this.getAnnotationMask() & annotation.getMask()) != 0;
+    }
+
+    /**
+     * Gets the mask of all {@link KnownAnnotation}s on this AbstractNode, classifying the Annotations on first use
+     * @return Mask of {@link KnownAnnotation#getMask()} bits
+     */
+    public int getAnnotationMask() {
+        if (this.annotationMask == -1) {
+            if (isEmpty(this.visibleAnnotations) && isEmpty(this.invisibleAnnotations)) {
+                // Most members have no Annotations, so skip allocating the lookup array
+                this.annotationMask = 0;
+            } else {
+                this.knownAnnotations = new AnnotationNode[KnownAnnotation.values().length];
+                this.annotationMask = KnownAnnotation.classify(this.visibleAnnotations, true, this.knownAnnotations)
+                        | KnownAnnotation.classify(this.invisibleAnnotations, false, this.knownAnnotations);
+            }
+        }
+        return this.annotationMask;
+    }
+
     /**
      * Gets the data inside an Annotation
      * @param annotationClass Annotation type
@@ -138,6 +190,24 @@ public class AbstractNode {
         return null;
     }
 
+    /**
+     * Gets a single value inside an Annotation without building a Map of all values
+     * @param annotationNode AnnotationNode instance
+     * @param name Identifier of the value
+     * @return Value of the identifier, or null if it is not set
+     */
+    @Nullable
+    public Object getAnnotationValue(AnnotationNode annotationNode, String name) {
+        if (annotationNode.values != null) {
+            for (int i = 0; i < annotationNode.values.size(); i+=2) {
+                if (name.equals(annotationNode.values.get(i))) {
+                    return annotationNode.values.get(i + 1);
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Gets the name of the AbstractNode
      * @return Name of the AbstractNode
@@ -176,9 +246,9 @@ public class AbstractNode {
      */
     public boolean isMixin() {
         if (this.instance instanceof ClassNode) {
-            return this.getAnnotation(Mixin.class) != null;
+            return this.hasAnnotation(KnownAnnotation.MIXIN);
         } else {
-            return this.parent.getAnnotation(Mixin.class) != null;
+            return this.parent.hasAnnotation(KnownAnnotation.MIXIN);
         }
     }
 
@@ -186,14 +256,13 @@ public class AbstractNode {
     public List<String> getMixinTargets() {
         AnnotationNode node;
         if (this.instance instanceof ClassNode) {
-            node = this.getAnnotation(Mixin.class);
+            node = this.getAnnotation(KnownAnnotation.MIXIN);
         } else {
-            node = this.parent.getAnnotation(Mixin.class);
+            node = this.parent.getAnnotation(KnownAnnotation.MIXIN);
         }
         if (node != null) {
-            Map<String, Object> data = this.getAnnotationData(node);
             @SuppressWarnings("unchecked")
-            List<Type> targets = (List<Type>) data.get("value");
+            List<Type> targets = (List<Type>) this.getAnnotationValue(node, "value");
             List<String> targetClassNames = new ArrayList<>();
             for (Type type : targets) {
                 targetClassNames.add(type.getClassName());
@@ -210,7 +279,7 @@ public class AbstractNode {
      */
     public boolean isShadowed() {
         if (!(this.instance instanceof ClassNode)) {
-            return this.getAnnotation(Shadow.class) != null;
+            return this.hasAnnotation(KnownAnnotation.SHADOW);
         }
         return false;
     }
@@ -221,9 +290,9 @@ public class AbstractNode {
      */
     public boolean isStrippable() {
         if (this.instance instanceof ClassNode) {
-            return this.getAnnotation(Strippable.class) != null;
+            return this.hasAnnotation(KnownAnnotation.STRIPPABLE);
         } else {
-            return this.parent.getAnnotation(Strippable.class) != null;
+            return this.parent.hasAnnotation(KnownAnnotation.STRIPPABLE);
         }
     }
 
@@ -232,7 +301,7 @@ public class AbstractNode {
      * @return True if it has the {@link Strip} Annotation
      */
     public boolean shouldStrip() {
-        return this.getAnnotation(Strip.class) != null;
+        return this.hasAnnotation(KnownAnnotation.STRIP);
     }
 
     /**
@@ -242,14 +311,25 @@ public class AbstractNode {
      * If the Strip Annotation has a class path override in its arguments, but will <i><b>not</b></i> take priority over Mixin classes
      */
     public void strip() {
-        Map<String, Object> stripData = this.getAnnotationData(Strip.class);
+        StripPlan plan = new StripPlan();
+        this.plan(plan);
+        plan.apply();
+    }
+
+    /**
+     * Adds the Strip of the current AbstractNode to a {@link StripPlan} without editing anything yet.<p>
+     * Targets are resolved through the plan's {@link TargetCache}, so each target is only parsed once per run
+     * @param plan StripPlan to add to
+     */
+    public void plan(StripPlan plan) {
+        AnnotationNode stripAnnotation = this.getAnnotation(KnownAnnotation.STRIP);
         ClassNode parentOverride = this.parent == null ? (ClassNode) this.instance : (ClassNode) this.parent.instance;
-        if (stripData != null) {
+        if (stripAnnotation != null) {
 
-            String overrideStr = (String) stripData.get("altClassPath");
+            String overrideStr = (String) this.getAnnotationValue(stripAnnotation, "altClassPath");
             if (overrideStr != null) {
                 try {
-                    parentOverride = MixinService.getService().getBytecodeProvider().getClassNode(overrideStr, false);
+                    parentOverride = plan.resolve(overrideStr);
                 } catch (ClassNotFoundException | IOException e) {
                     throw new RuntimeException(e);
                 }
@@ -258,71 +338,87 @@ public class AbstractNode {
 
         switch (this.instance) {
             case ClassNode node -> {
-                if (ASMStripper.VERBOSE) {
-                    System.out.println("Stripping Class " + node.name);
+                if (StripEvents.isDebugEnabled()) {
+                    StripEvents.debug("Stripping Class " + node.name);
                 }
                 if (this.isMixin()) {
-                    if (ASMStripper.VERBOSE) {
-                        System.out.println(node.name + " is a Mixin");
+                    if (StripEvents.isDebugEnabled()) {
+                        StripEvents.debug(node.name + " is a Mixin");
                     }
                     List<String> targets = this.getMixinTargets();
                     for (String target : targets) {
-                        try {
-                            ClassNode classNode = MixinService.getService().getBytecodeProvider().getClassNode(target, false);
-                            ClassStripper.stripClass(classNode, List.of(node, classNode));
-                        } catch (ClassNotFoundException | IOException e) {
-                            throw new RuntimeException(e);
-                        }
+                        StripPlan.Target targetPlan = mixinTarget(plan, target);
+                        plan.target(node).stripType(targetPlan.getName());
+                        targetPlan.stripType(targetPlan.getName());
                     }
                 } else {
-                    ClassStripper.stripClass(parentOverride, List.of(parentOverride));
+                    plan.target(parentOverride).stripType(parentOverride.name);
                 }
             }
             case MethodNode node -> {
-                if (ASMStripper.VERBOSE) {
-                    System.out.println("Stripping Method " + node.name);
+                if (StripEvents.isDebugEnabled()) {
+                    StripEvents.debug("Stripping Method " + node.name);
                 }
                 if (this.isShadowed()) {
-                    if (ASMStripper.VERBOSE) {
-                        System.out.println(node.name + " is Shadowed");
+                    if (StripEvents.isDebugEnabled()) {
+                        StripEvents.debug(node.name + " is Shadowed");
                     }
+                    ClassNode mixinNode = (ClassNode) this.parent.getInstance();
                     List<String> targets = this.getMixinTargets();
                     for (String target : targets) {
-                        try {
-                            ClassNode classNode = MixinService.getService().getBytecodeProvider().getClassNode(target, false);
-                            MethodStripper.stripMethod(node, classNode);
-                            MethodStripper.stripMethod(node, (ClassNode) parent.getInstance());
-                        } catch (ClassNotFoundException | IOException e) {
-                            throw new RuntimeException(e);
-                        }
+                        StripPlan.Target targetPlan = mixinTarget(plan, target);
+                        targetPlan.stripMethod(new StripPlan.Key(targetPlan.getName(), node.name, node.desc));
+                        plan.target(mixinNode).stripMethod(new StripPlan.Key(mixinNode.name, node.name, node.desc));
                     }
                 } else {
-                    MethodStripper.stripMethod(node, parentOverride);
+                    plan.target(parentOverride).stripMethod(new StripPlan.Key(parentOverride.name, node.name, node.desc));
                 }
             }
             case FieldNode node -> {
-                if (ASMStripper.VERBOSE) {
-                    System.out.println("Stripping Field " + node.name);
+                if (StripEvents.isDebugEnabled()) {
+                    StripEvents.debug("Stripping Field " + node.name);
                 }
                 if (this.isShadowed()) {
-                    if (ASMStripper.VERBOSE) {
-                        System.out.println(node.name + " is Shadowed");
+                    if (StripEvents.isDebugEnabled()) {
+                        StripEvents.debug(node.name + " is Shadowed");
                     }
+                    ClassNode mixinNode = (ClassNode) this.parent.getInstance();
                     List<String> targets = this.getMixinTargets();
                     for (String target : targets) {
-                        try {
-                            ClassNode classNode = MixinService.getService().getBytecodeProvider().getClassNode(target, false);
-                            FieldStripper.stripField(node, classNode);
-                            FieldStripper.stripField(node, (ClassNode) parent.getInstance());
-                        } catch (ClassNotFoundException | IOException e) {
-                            throw new RuntimeException(e);
-                        }
+                        StripPlan.Target targetPlan = mixinTarget(plan, target);
+                        targetPlan.stripField(new StripPlan.Key(targetPlan.getName(), node.name, node.desc));
+                        plan.target(mixinNode).stripField(new StripPlan.Key(mixinNode.name, node.name, node.desc));
                     }
                 } else {
-                    FieldStripper.stripField(node, parentOverride);
+                    plan.target(parentOverride).stripField(new StripPlan.Key(parentOverride.name, node.name, node.desc));
                 }
             }
             case null, default -> throw new IllegalStateException("AbstractNode Type Unknown");
         }
     }
+
+    /**
+     * Gets the plan of a Mixin target, registering it by name if the plan is lazy
+     * @param plan StripPlan to add to
+     * @param target Class name of the Mixin target
+     * @return Target plan
+     */
+    private static StripPlan.Target mixinTarget(StripPlan plan, String target) {
+        StripPlan.Target targetPlan;
+        if (plan.isLazy()) {
+            targetPlan = plan.target(target.replace('.', '/'));
+        } else {
+            try {
+                targetPlan = plan.target(plan.resolve(target));
+            } catch (ClassNotFoundException | IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        targetPlan.markMixinTarget();
+        return targetPlan;
+    }
+
+    private static boolean isEmpty(@Nullable List<AnnotationNode> annotations) {
+        return annotations == null || annotations.isEmpty();
+    }
 }
@@ -0,0 +1,266 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import com.github.tatercertified.asm_stripper.api.StripCounter;
+import com.github.tatercertified.asm_stripper.api.StripMode;
+import com.github.tatercertified.asm_stripper.api.StripType;
+import com.github.tatercertified.asm_stripper.api.StripperPlugin;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies Strips while building a jar, so production startup only handles the Strips that need the game's classes.<p>
+ * Strips outside of Mixins whose target is inside the jar are applied and the edited classes are written back.
+ * Classes with a class-level Strip are left out of the output.
+ * Everything else is left for runtime and listed in an embedded {@link StripIndex},
+ * which {@link JarUtils} replays instead of scanning the jar.<p>
+ * The first pass reduces every Strippable class to its {@link StripIndex.Entry}s.
+ * A {@link ReferenceIndex} of the Strips' targets is then built, so every class in the jar using a stripped class or member is edited too.
+ * The references to the targets of the Strips left for runtime are embedded with them.
+ * The last pass rewrites only the classes that are edited, recomputing the frames of the edited methods with a {@link FrameWriter},
+ * and copies every other entry still compressed.
+ * At most one ClassNode per worker is alive at a time, so memory use depends on the number of Strips, not the size of the jar.<p>
+ * Build-time Strips are unconditional, so jars whose {@link StripperPlugin#shouldStrip} decides at runtime should not be built this way
+ */
+public final class BuildStripper {
+    // 1980-01-01 in MS-DOS format, so the embedded index does not make the jar depend on the build time
+    private static final long DOS_EPOCH = 0x00210000L;
+
+    /**
+     * Strips a jar into a new jar, editing classes as ClassNodes
+     * @param input Jar to strip
+     * @param output Path of the stripped jar, replaced if it exists
+     * @param parallel If the first pass should run on all cores
+     * @return Summary of the build
+     * @throws IOException Failed to read the input or write the output
+     */
+    public static Result strip(Path input, Path output, boolean parallel) throws IOException {
+        return strip(input, output, parallel, StripMode.Tree);
+    }
+
+    /**
+     * Strips a jar into a new jar
+     * @param input Jar to strip
+     * @param output Path of the stripped jar, replaced if it exists
+     * @param parallel If the first pass should run on all cores
+     * @param mode How the edited classes are rewritten
+     * @return Summary of the build
+     * @throws IOException Failed to read the input or write the output
+     */
+    public static Result strip(Path input, Path output, boolean parallel, StripMode mode) throws IOException {
+        return strip(input, output, parallel, mode, List.of());
+    }
+
+    /**
+     * Strips a jar into a new jar.<p>
+     * Recomputing frames asks for the common superclass of the types an edited method uses,
+     * so every class the jar compiles against should be on the class path, as in the compile class path of the jar.
+     * The JDK classes are always available
+     * @param input Jar to strip
+     * @param output Path of the stripped jar, replaced if it exists
+     * @param parallel If the first pass should run on all cores
+     * @param mode How the edited classes are rewritten
+     * @param classpath Jars and directories holding the classes the jar uses
+     * @return Summary of the build
+     * @throws IOException Failed to read the input or write the output
+     * @throws IllegalStateException The frames of an edited method could not be computed from the class path
+     */
+    public static Result strip(Path input, Path output, boolean parallel, StripMode mode, List<Path> classpath) throws IOException {
+        URL[] urls = new URL[classpath.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = classpath.get(i).toUri().toURL();
+        }
+        // Not mapped, as a mapping outlives close and would keep the jar locked inside the Gradle daemon
+        try (MappedJarReader reader = MappedJarReader.openChannel(input);
+             URLClassLoader resources = new URLClassLoader(urls, ClassLoader.getPlatformClassLoader())) {
+            List<MappedJarReader.Entry> classEntries = reader.getEntries().stream()
+                    .filter(MappedJarReader.Entry::isClass)
+                    .toList();
+            StripEvents.count(StripCounter.ClassesScanned, classEntries.size());
+
+            // First pass, only the Strips of each class are kept, along with the superclass of every class for frame computation
+            ClassHierarchy hierarchy = new ClassHierarchy(resources);
+            List<ClassStrips> scanned = JarUtils.map(classEntries, parallel, entry -> {
+                try {
+                    return collect(reader, entry, hierarchy);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            // Only the classes naming a target in their constant pool have their code visited for references
+            Set<String> owners = new HashSet<>();
+            List<StripIndex.Entry> deferred = new ArrayList<>();
+            for (ClassStrips strips : scanned) {
+                for (StripIndex.Entry strip : strips.resolved()) {
+                    owners.addAll(strip.targetNames());
+                }
+                deferred.addAll(strips.deferred());
+            }
+            Set<String> deferredOwners = StripIndex.strippedOwners(deferred);
+            owners.addAll(deferredOwners);
+            ReferenceIndex references = new ReferenceIndex(owners);
+            if (!owners.isEmpty()) {
+                JarUtils.collectReferences(classEntries, reader::read, references, parallel, null);
+            }
+
+            // Targets are registered by name and applied when the second pass reaches them
+            StripPlan plan = new StripPlan();
+            Set<String> removed = new HashSet<>();
+            List<String> deferredClasses = new ArrayList<>();
+            int applied = 0;
+
+            for (ClassStrips strips : scanned) {
+                if (!strips.deferred().isEmpty()) {
+                    deferredClasses.add(strips.name());
+                }
+                for (StripIndex.Entry strip : strips.resolved()) {
+                    plan.add(strip, references);
+                    if (strip.type() == StripType.Class) {
+                        removed.add(strip.owner());
+                    }
+                    applied++;
+                }
+            }
+            StripEvents.count(StripCounter.MembersMatched, applied);
+
+            // Second pass, edited classes are rewritten and everything else is copied as it is
+            Path parent = output.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, output.getFileName().toString(), ".tmp");
+            int rewritten = 0;
+            try (RawJarWriter writer = new RawJarWriter(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                for (MappedJarReader.Entry entry : reader.getEntries()) {
+                    String name = entry.name();
+                    if (name.equals(StripIndex.EMBEDDED_PATH)) {
+                        continue;
+                    }
+                    if (!entry.isClass()) {
+                        writer.copy(reader, entry);
+                        continue;
+                    }
+
+                    String className = name.substring(0, name.length() - ".class".length());
+                    if (removed.contains(className)) {
+                        continue;
+                    }
+                    StripPlan.Target target = plan.getTarget(className);
+                    if (target == null) {
+                        writer.copy(reader, entry);
+                        continue;
+                    }
+
+                    byte[] bytes = reader.read(entry);
+                    ClassReader classReader = new ClassReader(bytes);
+                    if (!target.mayMatch(classReader)) {
+                        writer.copy(reader, entry);
+                        continue;
+                    }
+
+                    byte[] stripped = switch (mode) {
+                        case Tree -> {
+                            ClassNode node = new ClassNode();
+                            classReader.accept(node, ClassReader.EXPAND_FRAMES);
+                            Set<MethodNode> edited = new HashSet<>();
+                            target.apply(node, edited);
+                            yield FrameWriter.write(node, edited, hierarchy);
+                        }
+                        case Visitor -> target.apply(bytes);
+                    };
+                    writer.write(name, entry.dosTime(), stripped);
+                    rewritten++;
+                }
+
+                // Classes left out of the output cannot be edited at runtime
+                List<ReferenceIndex.Reference> deferredReferences = new ArrayList<>();
+                for (ReferenceIndex.Reference reference : references.getAllReferences()) {
+                    if (deferredOwners.contains(reference.owner()) && !removed.contains(reference.className())) {
+                        deferredReferences.add(reference);
+                    }
+                }
+                ByteArrayOutputStream index = new ByteArrayOutputStream();
+                StripIndex.of(StripIndex.EMBEDDED_HASH, deferredClasses, deferred, deferredReferences).write(index);
+                writer.write(StripIndex.EMBEDDED_PATH, DOS_EPOCH, index.toByteArray());
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING);
+
+            if (StripEvents.isDebugEnabled()) {
+                StripEvents.debug("Applied " + applied + " Strips at build time, left " + deferredClasses.size() + " classes for runtime");
+            }
+            return new Result(applied, deferredClasses.size(), removed.size(), rewritten);
+        }
+    }
+
+    /**
+     * Reduces a class to its Strips, split by whether they can be applied at build time
+     * @param reader Reader of the jar
+     * @param entry Class entry to read
+     * @param hierarchy ClassHierarchy receiving the class
+     * @return Strips of the class, or null if it is not Strippable
+     * @throws IOException Failed to read the entry
+     */
+    @Nullable
+    private static ClassStrips collect(MappedJarReader reader, MappedJarReader.Entry entry, ClassHierarchy hierarchy) throws IOException {
+        ClassReader classReader = new ClassReader(reader.read(entry));
+        hierarchy.add(classReader);
+        if (!JarUtils.isStrippable(classReader)) {
+            return null;
+        }
+
+        ClassNode node = new ClassNode();
+        classReader.accept(node, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        List<StripIndex.Entry> strips = StripIndex.entriesOf(node);
+        if (strips.isEmpty()) {
+            return null;
+        }
+
+        // A stripped class takes its members with it
+        for (StripIndex.Entry strip : strips) {
+            if (strip.type() == StripType.Class) {
+                strips = List.of(strip);
+                break;
+            }
+        }
+
+        List<StripIndex.Entry> resolved = new ArrayList<>();
+        List<StripIndex.Entry> deferred = new ArrayList<>();
+        for (StripIndex.Entry strip : strips) {
+            // Mixin targets are only known once the game is running
+            boolean resolvable = strip.mixinTargets().isEmpty()
+                    && (strip.altClassPath() == null || reader.getEntry(strip.altClassPath().replace('.', '/') + ".class") != null);
+            (resolvable ? resolved : deferred).add(strip);
+        }
+        return new ClassStrips(node.name, resolved, deferred);
+    }
+
+    /**
+     * Summary of a build-time strip
+     * @param applied Number of Strips applied at build time
+     * @param deferredClasses Number of classes with Strips left for runtime
+     * @param removedClasses Number of classes left out of the output
+     * @param rewrittenClasses Number of classes written back after editing
+     */
+    public record Result(int applied, int deferredClasses, int removedClasses, int rewrittenClasses) {
+    }
+
+    private record ClassStrips(String name, List<StripIndex.Entry> resolved, List<StripIndex.Entry> deferred) {
+    }
+}
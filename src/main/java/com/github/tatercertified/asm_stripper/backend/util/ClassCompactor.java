@@ -0,0 +1,235 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.LocalVariableAnnotationNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prunes the debug info and attributes of an edited class that only described removed code.<p>
+ * Line numbers with no instruction left before the next line number, local variables and try-catch blocks
+ * whose range no longer holds an instruction, and InnerClasses entries for nested classes the class stopped naming are removed.
+ * The constant pool needs no pass of its own, as a ClassNode written without its ClassReader gets a fresh pool
+ * holding only the constants that are still used
+ */
+public final class ClassCompactor {
+    /**
+     * Prunes the line numbers, local variables, and try-catch blocks of an edited method
+     * @param method MethodNode to compact
+     * @return Number of entries removed
+     */
+    public static int compact(MethodNode method) {
+        int removed = 0;
+
+        // Number of instructions before each label, so a range is empty when both of its labels have the same count
+        Map<LabelNode, Integer> positions = new HashMap<>();
+        LineNumberNode pendingLine = null;
+        int position = 0;
+        for (Iterator<AbstractInsnNode> iterator = method.instructions.iterator(); iterator.hasNext(); ) {
+            AbstractInsnNode insn = iterator.next();
+            switch (insn) {
+                case LabelNode label -> positions.put(label, position);
+                case LineNumberNode line -> {
+                    if (pendingLine != null) {
+                        method.instructions.remove(pendingLine);
+                        removed++;
+                    }
+                    pendingLine = line;
+                }
+                case FrameNode ignored -> {
+                }
+                default -> {
+                    pendingLine = null;
+                    position++;
+                }
+            }
+        }
+        if (pendingLine != null) {
+            method.instructions.remove(pendingLine);
+            removed++;
+        }
+
+        if (method.localVariables != null) {
+            int size = method.localVariables.size();
+            method.localVariables.removeIf(local -> isEmpty(positions, local.start, local.end));
+            removed += size - method.localVariables.size();
+        }
+        removed += compact(positions, method.visibleLocalVariableAnnotations);
+        removed += compact(positions, method.invisibleLocalVariableAnnotations);
+
+        if (method.tryCatchBlocks != null) {
+            int size = method.tryCatchBlocks.size();
+            method.tryCatchBlocks.removeIf(tryCatch -> isEmpty(positions, tryCatch.start, tryCatch.end));
+            if (method.tryCatchBlocks.size() != size) {
+                removed += size - method.tryCatchBlocks.size();
+                // Type annotations on exception parameters refer to the blocks by index
+                for (int i = 0; i < method.tryCatchBlocks.size(); i++) {
+                    method.tryCatchBlocks.get(i).updateIndex(i);
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes the InnerClasses entries of nested classes that the class no longer names.<p>
+     * Entries for the class itself and for its own member classes always stay, as reflection reads them
+     * @param node ClassNode to compact
+     * @return Number of entries removed
+     */
+    public static int compactInnerClasses(ClassNode node) {
+        if (node.innerClasses == null || node.innerClasses.isEmpty()) {
+            return 0;
+        }
+        Set<String> referenced = referencedClasses(node);
+        int size = node.innerClasses.size();
+        node.innerClasses.removeIf(inner -> !inner.name.equals(node.name) && !node.name.equals(inner.outerName) && !referenced.contains(inner.name));
+        return size - node.innerClasses.size();
+    }
+
+    private static int compact(Map<LabelNode, Integer> positions, @Nullable List<LocalVariableAnnotationNode> annotations) {
+        if (annotations == null) {
+            return 0;
+        }
+        int removed = 0;
+        for (Iterator<LocalVariableAnnotationNode> iterator = annotations.iterator(); iterator.hasNext(); ) {
+            LocalVariableAnnotationNode annotation = iterator.next();
+            for (int i = annotation.start.size() - 1; i >= 0; i--) {
+                if (isEmpty(positions, annotation.start.get(i), annotation.end.get(i))) {
+                    annotation.start.remove(i);
+                    annotation.end.remove(i);
+                    annotation.index.remove(i);
+                }
+            }
+            if (annotation.start.isEmpty()) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private static boolean isEmpty(Map<LabelNode, Integer> positions, LabelNode start, LabelNode end) {
+        Integer from = positions.get(start);
+        Integer to = positions.get(end);
+        return from != null && from.equals(to);
+    }
+
+    /**
+     * Collects the classes a class names through Class constants, which are the ones that need an InnerClasses entry
+     * @param node ClassNode to scan
+     * @return Internal names of the named classes, array element types included
+     */
+    private static Set<String> referencedClasses(ClassNode node) {
+        Set<String> classes = new HashSet<>();
+        classes.add(node.name);
+        addName(classes, node.superName);
+        classes.addAll(node.interfaces);
+        addName(classes, node.outerClass);
+        addName(classes, node.nestHostClass);
+        addNames(classes, node.nestMembers);
+        addNames(classes, node.permittedSubclasses);
+
+        for (MethodNode method : node.methods) {
+            addNames(classes, method.exceptions);
+            for (TryCatchBlockNode tryCatch : method.tryCatchBlocks) {
+                addName(classes, tryCatch.type);
+            }
+            for (AbstractInsnNode insn : method.instructions) {
+                switch (insn) {
+                    case TypeInsnNode typeInsn -> addName(classes, typeInsn.desc);
+                    case FieldInsnNode fieldInsn -> addName(classes, fieldInsn.owner);
+                    case MethodInsnNode methodInsn -> addName(classes, methodInsn.owner);
+                    case MultiANewArrayInsnNode multiArray -> addName(classes, multiArray.desc);
+                    case LdcInsnNode ldc -> addConstant(classes, ldc.cst);
+                    case InvokeDynamicInsnNode indy -> {
+                        addConstant(classes, indy.bsm);
+                        for (Object arg : indy.bsmArgs) {
+                            addConstant(classes, arg);
+                        }
+                    }
+                    case FrameNode frame -> {
+                        addFrameTypes(classes, frame.local);
+                        addFrameTypes(classes, frame.stack);
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+        return classes;
+    }
+
+    private static void addConstant(Set<String> classes, Object constant) {
+        switch (constant) {
+            case Type type when type.getSort() == Type.OBJECT || type.getSort() == Type.ARRAY -> addName(classes, type.getInternalName());
+            case Handle handle -> addName(classes, handle.getOwner());
+            case ConstantDynamic dynamic -> {
+                addConstant(classes, dynamic.getBootstrapMethod());
+                for (int i = 0; i < dynamic.getBootstrapMethodArgumentCount(); i++) {
+                    addConstant(classes, dynamic.getBootstrapMethodArgument(i));
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private static void addFrameTypes(Set<String> classes, @Nullable List<Object> types) {
+        if (types != null) {
+            for (Object type : types) {
+                if (type instanceof String name) {
+                    addName(classes, name);
+                }
+            }
+        }
+    }
+
+    private static void addNames(Set<String> classes, @Nullable List<String> names) {
+        if (names != null) {
+            for (String name : names) {
+                addName(classes, name);
+            }
+        }
+    }
+
+    /**
+     * Adds an internal name, or the element class of an array descriptor
+     * @param classes Set to add to
+     * @param name Internal name or array descriptor, may be null
+     */
+    private static void addName(Set<String> classes, @Nullable String name) {
+        if (name == null) {
+            return;
+        }
+        if (name.charAt(0) == '[') {
+            Type element = Type.getType(name).getElementType();
+            if (element.getSort() == Type.OBJECT) {
+                classes.add(element.getInternalName());
+            }
+        } else {
+            classes.add(name);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Superclasses of the classes seen while scanning, used to answer the common superclass questions of frame computation.<p>
+ * Classes that were not scanned are read as resources, never loaded, so asking about a class does not define it
+ */
+public final class ClassHierarchy {
+    private static final String OBJECT = "java/lang/Object";
+
+    private final Map<String, Optional<Entry>> classes = new ConcurrentHashMap<>();
+    @Nullable
+    private final ClassLoader resources;
+
+    /**
+     * Creates an empty hierarchy
+     * @param resources ClassLoader whose resources hold the classes that were not scanned, or null to only use scanned classes
+     */
+    public ClassHierarchy(@Nullable ClassLoader resources) {
+        this.resources = resources;
+    }
+
+    /**
+     * Adds a class from its header
+     * @param reader ClassReader of the class
+     */
+    public void add(ClassReader reader) {
+        this.classes.put(reader.getClassName(), Optional.of(new Entry(reader.getSuperName(), (reader.getAccess() & Opcodes.ACC_INTERFACE) != 0)));
+    }
+
+    /**
+     * Gets the superclass of a class
+     * @param internalName Internal name of the class
+     * @return Internal name of the superclass, or null for {@code java/lang/Object}
+     * @throws TypeNotPresentException The class was not scanned and is not a resource
+     */
+    @Nullable
+    public String getSuperName(String internalName) {
+        return this.get(internalName).superName();
+    }
+
+    /**
+     * Finds the closest common superclass of two classes, the same way {@link org.objectweb.asm.ClassWriter#getCommonSuperClass} does
+     * @param type1 Internal name of a class
+     * @param type2 Internal name of another class
+     * @return Internal name of the common superclass, {@code java/lang/Object} if either is an interface
+     * @throws TypeNotPresentException Either class was not scanned and is not a resource
+     */
+    public String getCommonSuperClass(String type1, String type2) {
+        if (type1.equals(type2)) {
+            return type1;
+        }
+        Entry entry1 = this.get(type1);
+        Entry entry2 = this.get(type2);
+        if (entry1.isInterface() || entry2.isInterface()) {
+            return OBJECT;
+        }
+        if (this.isSuperClass(type1, type2)) {
+            return type1;
+        }
+        if (this.isSuperClass(type2, type1)) {
+            return type2;
+        }
+        String type = entry1.superName();
+        while (type != null && !this.isSuperClass(type, type2)) {
+            type = this.getSuperName(type);
+        }
+        return type != null ? type : OBJECT;
+    }
+
+    private boolean isSuperClass(String superType, String type) {
+        for (String current = type; current != null; current = this.getSuperName(current)) {
+            if (current.equals(superType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Entry get(String internalName) {
+        Optional<Entry> entry = this.classes.get(internalName);
+        if (entry == null) {
+            entry = Optional.ofNullable(this.read(internalName));
+            this.classes.putIfAbsent(internalName, entry);
+        }
+        return entry.orElseThrow(() -> new TypeNotPresentException(internalName.replace('/', '.'), null));
+    }
+
+    @Nullable
+    private Entry read(String internalName) {
+        if (this.resources == null) {
+            return null;
+        }
+        try (InputStream stream = this.resources.getResourceAsStream(internalName + ".class")) {
+            if (stream == null) {
+                return null;
+            }
+            ClassReader reader = new ClassReader(stream);
+            return new Entry(reader.getSuperName(), (reader.getAccess() & Opcodes.ACC_INTERFACE) != 0);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param superName Internal name of the superclass, or null for {@code java/lang/Object}
+     * @param isInterface If the class is an interface
+     */
+    private record Entry(@Nullable String superName, boolean isInterface) {
+    }
+}
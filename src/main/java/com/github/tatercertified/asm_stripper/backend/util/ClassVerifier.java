@@ -0,0 +1,170 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.BasicVerifier;
+import org.objectweb.asm.tree.analysis.Frame;
+
+import java.util.List;
+
+/**
+ * Checks rewritten classes before they are handed to the JVM, without loading any class.<p>
+ * Every method is run through a {@link BasicVerifier}, and every uninitialized value of a stack map frame
+ * must still point at a {@code new} instruction, as the JVM rejects the class at define time otherwise.
+ * Each stack map frame is then compared with the values reaching it: the stack must have the same depth,
+ * and every local and stack entry the frame declares must hold a value of the same kind, int, float, long, double, or reference.<p>
+ * Reference types are not checked against each other, as that needs the class hierarchy,
+ * so a frame declaring a class its incoming value is not assignable to is only rejected by the JVM
+ */
+public final class ClassVerifier {
+    /**
+     * Checks a class
+     * @param classBytes Bytes of the class
+     * @return Description of the first problem found, or null if the class looks valid
+     */
+    @Nullable
+    public static String verify(byte[] classBytes) {
+        ClassNode node = new ClassNode();
+        try {
+            new ClassReader(classBytes).accept(node, ClassReader.EXPAND_FRAMES);
+        } catch (RuntimeException e) {
+            return "Malformed class: " + e;
+        }
+        for (MethodNode method : node.methods) {
+            String problem = verify(node.name, method);
+            if (problem != null) {
+                return node.name + "." + method.name + method.desc + ": " + problem;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String verify(String owner, MethodNode method) {
+        if (method.instructions.size() == 0) {
+            return null;
+        }
+        for (AbstractInsnNode insn : method.instructions) {
+            if (insn instanceof FrameNode frame && (!pointsAtNew(frame.local) || !pointsAtNew(frame.stack))) {
+                return "Uninitialized frame value does not point at a new instruction";
+            }
+        }
+        Frame<BasicValue>[] frames;
+        try {
+            frames = new Analyzer<>(new BasicVerifier()).analyze(owner, method);
+        } catch (AnalyzerException e) {
+            return e.getMessage();
+        }
+        for (int i = 0; i < frames.length; i++) {
+            // Unreachable code has no inferred frame to compare with
+            if (method.instructions.get(i) instanceof FrameNode frame && frames[i] != null) {
+                String problem = compare(frame, frames[i]);
+                if (problem != null) {
+                    return "Stack map frame at instruction " + i + " " + problem;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String compare(FrameNode frame, Frame<BasicValue> inferred) {
+        if (frame.local != null) {
+            int slot = 0;
+            for (Object declared : frame.local) {
+                if (slot >= inferred.getLocals()) {
+                    return "declares more locals than the method has";
+                }
+                if (!matches(declared, inferred.getLocal(slot))) {
+                    return "declares local " + slot + " as " + describe(declared) + " but receives " + inferred.getLocal(slot);
+                }
+                // Expanded frames list a long or double once, although it takes two slots
+                slot += declared == Opcodes.LONG || declared == Opcodes.DOUBLE ? 2 : 1;
+            }
+        }
+        int depth = frame.stack == null ? 0 : frame.stack.size();
+        if (depth != inferred.getStackSize()) {
+            return "declares a stack of " + depth + " values but receives " + inferred.getStackSize();
+        }
+        for (int i = 0; i < depth; i++) {
+            Object declared = frame.stack.get(i);
+            if (declared == Opcodes.TOP || !matches(declared, inferred.getStack(i))) {
+                return "declares stack value " + i + " as " + describe(declared) + " but receives " + inferred.getStack(i);
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(Object declared, BasicValue value) {
+        if (declared == Opcodes.TOP) {
+            return true;
+        }
+        if (declared == Opcodes.INTEGER) {
+            return value == BasicValue.INT_VALUE;
+        }
+        if (declared == Opcodes.FLOAT) {
+            return value == BasicValue.FLOAT_VALUE;
+        }
+        if (declared == Opcodes.LONG) {
+            return value == BasicValue.LONG_VALUE;
+        }
+        if (declared == Opcodes.DOUBLE) {
+            return value == BasicValue.DOUBLE_VALUE;
+        }
+        // Null, uninitialized, and class or array types are all references
+        return value.isReference();
+    }
+
+    private static String describe(Object declared) {
+        if (declared instanceof String type) {
+            return type;
+        }
+        if (declared instanceof LabelNode) {
+            return "uninitialized";
+        }
+        if (declared == Opcodes.TOP) {
+            return "top";
+        }
+        if (declared == Opcodes.INTEGER) {
+            return "int";
+        }
+        if (declared == Opcodes.FLOAT) {
+            return "float";
+        }
+        if (declared == Opcodes.LONG) {
+            return "long";
+        }
+        if (declared == Opcodes.DOUBLE) {
+            return "double";
+        }
+        return declared == Opcodes.NULL ? "null" : "uninitialized this";
+    }
+
+    private static boolean pointsAtNew(@Nullable List<Object> values) {
+        if (values == null) {
+            return true;
+        }
+        for (Object value : values) {
+            if (value instanceof LabelNode label) {
+                AbstractInsnNode next = label.getNext();
+                // Labels, line numbers, and frames have no opcode
+                while (next != null && next.getOpcode() == -1) {
+                    next = next.getNext();
+                }
+                if (next == null || next.getOpcode() != Opcodes.NEW) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
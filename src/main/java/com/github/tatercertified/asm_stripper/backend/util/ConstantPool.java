@@ -0,0 +1,106 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import org.objectweb.asm.ClassReader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Checks the constant pool of a class before anything else is read.<p>
+ * Any instruction using a class or member names its owner in a Class constant, and any descriptor mentioning a class
+ * is a UTF8 constant, so a class whose pool names none of the planned classes cannot hold a single match
+ */
+public final class ConstantPool {
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_CLASS = 7;
+
+    /**
+     * Checks if any Class constant names one of the classes
+     * @param reader ClassReader of the class
+     * @param classNames Internal names to look for
+     * @return True if the class names any of them
+     */
+    public static boolean namesAnyClass(ClassReader reader, Set<String> classNames) {
+        if (classNames.isEmpty()) {
+            return false;
+        }
+        char[] buffer = new char[reader.getMaxStringLength()];
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            if (offset > 0 && reader.readByte(offset - 1) == CONSTANT_CLASS && classNames.contains(reader.readUTF8(offset, buffer))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hashes the names of every Class constant, as a compact record of the classes a class may reference.<p>
+     * A class whose hashes miss the {@link String#hashCode()} of a name cannot name that class,
+     * while a hit still has to be confirmed with {@link #namesAnyClass}
+     * @param reader ClassReader of the class
+     * @return Hash codes of the named classes, in constant pool order
+     */
+    public static int[] classNameHashes(ClassReader reader) {
+        int[] hashes = new int[reader.getItemCount()];
+        int count = 0;
+        char[] buffer = new char[reader.getMaxStringLength()];
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            if (offset > 0 && reader.readByte(offset - 1) == CONSTANT_CLASS) {
+                hashes[count++] = reader.readUTF8(offset, buffer).hashCode();
+            }
+        }
+        return Arrays.copyOf(hashes, count);
+    }
+
+    /**
+     * Checks if any UTF8 constant, such as a field or method descriptor, mentions one of the classes as an object type
+     * @param reader ClassReader of the class
+     * @param internalNames Internal names to look for
+     * @return True if any descriptor or signature mentions them
+     */
+    public static boolean mentionsAnyType(ClassReader reader, Set<String> internalNames) {
+        if (internalNames.isEmpty()) {
+            return false;
+        }
+        // Internal names are nearly always ASCII, where modified UTF-8 and UTF-8 are the same bytes
+        byte[][] patterns = new byte[internalNames.size()][];
+        int count = 0;
+        for (String name : internalNames) {
+            patterns[count++] = ("L" + name + ";").getBytes(StandardCharsets.UTF_8);
+        }
+
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            if (offset > 0 && reader.readByte(offset - 1) == CONSTANT_UTF8) {
+                int start = offset + 2;
+                int end = start + reader.readUnsignedShort(offset);
+                for (byte[] pattern : patterns) {
+                    if (contains(reader, start, end, pattern)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(ClassReader reader, int start, int end, byte[] pattern) {
+        int last = end - pattern.length;
+        for (int i = start; i <= last; i++) {
+            if (reader.readByte(i) != (pattern[0] & 0xFF)) {
+                continue;
+            }
+            int j = 1;
+            while (j < pattern.length && reader.readByte(i + j) == (pattern[j] & 0xFF)) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.ListIterator;
+import java.util.Set;
+
+/**
+ * Writes an edited ClassNode, recomputing the stack map frames of the edited methods only.<p>
+ * {@link ClassWriter#COMPUTE_FRAMES} analyzes every method of a class, so each edited method is written
+ * on its own through a frame-computing writer and read back, while every other method keeps its frames as they are.
+ * Common superclasses come from a {@link ClassHierarchy} instead of loading classes.
+ * Frames that cannot be recomputed fail the write, as the old frames no longer match the edited code
+ */
+public final class FrameWriter {
+    /**
+     * Writes a class, recomputing the frames of its edited methods
+     * @param node ClassNode to write
+     * @param edited Methods of the node whose instructions were edited
+     * @param hierarchy ClassHierarchy answering the common superclass questions
+     * @return Bytes of the class
+     * @throws IllegalStateException The frames of an edited method could not be computed, usually because the hierarchy misses a class
+     */
+    public static byte[] write(ClassNode node, Set<MethodNode> edited, ClassHierarchy hierarchy) {
+        // Classes older than Java 7 can fall back to the type-inferring verifier, so their frames are left as they are
+        if (!edited.isEmpty() && (node.version & 0xFFFF) >= Opcodes.V1_7) {
+            ListIterator<MethodNode> methods = node.methods.listIterator();
+            while (methods.hasNext()) {
+                MethodNode method = methods.next();
+                if (edited.contains(method) && method.instructions.size() > 0) {
+                    methods.set(recompute(node, method, hierarchy));
+                }
+            }
+        }
+
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        node.accept(writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Recomputes the frames of one method
+     * @param owner ClassNode declaring the method
+     * @param method MethodNode to recompute
+     * @param hierarchy ClassHierarchy answering the common superclass questions
+     * @return Copy of the method with fresh frames
+     * @throws IllegalStateException The frames could not be computed
+     */
+    private static MethodNode recompute(ClassNode owner, MethodNode method, ClassHierarchy hierarchy) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return hierarchy.getCommonSuperClass(type1, type2);
+            }
+        };
+        try {
+            writer.visit(owner.version, owner.access, owner.name, null, owner.superName, owner.interfaces.toArray(String[]::new));
+            method.accept(writer);
+            writer.visitEnd();
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Could not recompute the frames of " + owner.name + "." + method.name + method.desc
+                    + ", check that every class it uses is on the class path", e);
+        }
+
+        ClassNode copy = new ClassNode();
+        new ClassReader(writer.toByteArray()).accept(copy, ClassReader.EXPAND_FRAMES);
+        return copy.methods.getFirst();
+    }
+}
@@ -1,25 +1,50 @@
 package com.github.tatercertified.asm_stripper.backend.util;
 
+import com.github.tatercertified.asm_stripper.api.StripCounter;
+import com.github.tatercertified.asm_stripper.api.annotation.Strippable;
+import com.github.tatercertified.asm_stripper.backend.jfr.ScanEvent;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.ClassNode;
-import org.spongepowered.asm.service.MixinService;
 
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 public final class JarUtils {
+    private static final String STRIPPABLE_DESC = KnownAnnotation.STRIPPABLE.getDescriptor();
+    // Tasks each worker may run ahead of the sink, enough to keep the workers busy while a slow class is parsed
+    private static final int WINDOW_PER_THREAD = 4;
     private static Path jarPath;
+    private static List<Path> scanRoots = List.of();
+    // References found by the last scan, handed to the next getReferences call
+    @Nullable
+    private static ReferenceIndex scannedReferences;
 
     /**
      * Sets the jar file path from a Class in your project
@@ -28,44 +53,558 @@ public final class JarUtils {
     public static void setJarPathFromClass(Class<?> clazz) {
         try {
             jarPath = Paths.get(clazz.getProtectionDomain().getCodeSource().getLocation().toURI());
+            scannedReferences = null;
         } catch (URISyntaxException e) {
             throw new RuntimeException(e);
         }
     }
 
     /**
-     * Gets all {@link ClassNode}s from your project
-     * @return List of all ClassNodes in your project
+     * Sets the jar file or class directory path directly
+     * @param path Path to a jar or a class directory
+     */
+    public static void setJarPath(Path path) {
+        jarPath = path;
+        scannedReferences = null;
+    }
+
+    /**
+     * Sets other jars and class directories to scan along with your project, such as the other mods of a modpack.<p>
+     * Their Strippable classes are planned together with yours, so Strips can target or reference classes in any of them
+     * @param roots Paths to jars or class directories, empty to only scan your project
+     */
+    public static void setScanRoots(List<Path> roots) {
+        scanRoots = List.copyOf(roots);
+        scannedReferences = null;
+    }
+
+    /**
+     * Gets the {@link ClassNode}s of all {@link Strippable} classes in your project.<p>
+     * Every class is pre-scanned by its header and class-level annotations first,
+     * so full ClassNodes are only built for classes that can contain Strips
+     * @return List of all Strippable ClassNodes in your project
      * @throws IOException Failed to read the jar
      */
     public static List<ClassNode> getClassNodes() throws IOException {
+        return getClassNodes(false);
+    }
+
+    /**
+     * Gets the {@link ClassNode}s of all {@link Strippable} classes in your project.<p>
+     * When parallel, the entries are inflated and parsed on a worker pool sized to the available cores.
+     * The results keep the order of the jar entries, so both modes return the same list
+     * @param parallel If the scan should run on all cores
+     * @return List of all Strippable ClassNodes in your project
+     * @throws IOException Failed to read the jar
+     */
+    public static List<ClassNode> getClassNodes(boolean parallel) throws IOException {
+        return getClassNodes(parallel, null);
+    }
+
+    /**
+     * Gets the {@link ClassNode}s of all {@link Strippable} classes in your project.<p>
+     * If a {@link StripIndex} exists for the current contents of the jar, only the indexed classes are read.
+     * Otherwise, the whole jar is scanned and the index is rewritten
+     * @param parallel If the scan should run on all cores
+     * @param indexPath Path of the StripIndex file, or null to always scan
+     * @return List of all Strippable ClassNodes in your project
+     * @throws IOException Failed to read the jar
+     */
+    public static List<ClassNode> getClassNodes(boolean parallel, @Nullable Path indexPath) throws IOException {
         List<ClassNode> nodes = new ArrayList<>();
-        if (jarPath != null) {
-            try (JarFile jarFile = new JarFile(jarPath.toString())) {
-                Enumeration<JarEntry> entries = jarFile.entries();
-
-                while (entries.hasMoreElements()) {
-                    JarEntry entry = entries.nextElement();
-                    if (entry.getName().endsWith(".class")) {
-                        nodes.add(MixinService.getService().getBytecodeProvider().getClassNode(entry.getName(), false));
+        forEachClassNode(parallel, indexPath, nodes::add);
+        return nodes;
+    }
+
+    /**
+     * Hands the {@link ClassNode} of every {@link Strippable} class in your project to a sink as soon as it is parsed.<p>
+     * Nothing keeps the nodes after the sink returns, so only the nodes the sink holds on to stay in memory.
+     * The sink is called once per class in source order on the calling thread, while the classes after it are parsed on the workers when parallel.
+     * It must not change a node before returning, as the Strips of each node are recorded after it.<p>
+     * The references of the project to the classes edited by the Strips are collected along the way,
+     * or replayed from a StripIndex, and kept for the next {@link #getReferences} call
+     * @param parallel If the scan should run on all cores
+     * @param indexPath Path of the StripIndex file, or null to always scan
+     * @param sink Receives every Strippable ClassNode
+     * @throws IOException Failed to read the jar
+     */
+    public static void forEachClassNode(boolean parallel, @Nullable Path indexPath, Consumer<ClassNode> sink) throws IOException {
+        if (jarPath == null) {
+            return;
+        }
+
+        ScanEvent event = new ScanEvent();
+        event.begin();
+        int[] count = new int[1];
+        scannedReferences = null;
+        scannedReferences = readClassNodes(parallel, indexPath, node -> {
+            count[0]++;
+            sink.accept(node);
+        });
+        if (event.shouldCommit()) {
+            event.path = jarPath.toString();
+            event.roots = scanRoots.size() + 1;
+            event.strippableClasses = count[0];
+            event.parallel = parallel;
+            event.commit();
+        }
+    }
+
+    private static ReferenceIndex readClassNodes(boolean parallel, @Nullable Path indexPath, Consumer<ClassNode> sink) throws IOException {
+        if (!scanRoots.isEmpty()) {
+            return scanRoots(parallel, sink);
+        }
+
+        if (Files.isDirectory(jarPath)) {
+            List<Path> paths;
+            try (Stream<Path> stream = Files.walk(jarPath)) {
+                paths = stream.filter(path -> path.toString().endsWith(".class")).toList();
+            }
+            String hash = indexPath != null ? StripIndex.hash(jarPath, paths) : null;
+            return scanWithIndex(paths, Files::readAllBytes, name -> jarPath.resolve(name + ".class"), parallel, indexPath, hash, sink);
+        } else {
+            try (MappedJarReader reader = MappedJarReader.open(jarPath)) {
+                // A build already applied everything it could resolve, so only the classes it left for runtime are read
+                StripIndex embedded = StripIndex.readEmbedded(reader);
+                if (embedded != null) {
+                    if (StripEvents.isDebugEnabled()) {
+                        StripEvents.debug("Replaying embedded Strip Index with " + embedded.getClassNames().size() + " classes");
                     }
+                    List<MappedJarReader.Entry> indexed = embedded.getClassNames().stream().map(name -> reader.getEntry(name + ".class")).toList();
+                    scan(indexed, parallel, reader::read, false, null, null, sink);
+                    return embedded.getReferences();
+                }
+
+                List<MappedJarReader.Entry> entries = reader.getEntries().stream()
+                        .filter(MappedJarReader.Entry::isClass)
+                        .toList();
+                String hash = indexPath != null ? StripIndex.hash(entries) : null;
+                return scanWithIndex(entries, reader::read, name -> reader.getEntry(name + ".class"), parallel, indexPath, hash, sink);
+            }
+        }
+    }
+
+    /**
+     * Scans your project and every scan root as one set of sources.<p>
+     * The classes of all roots share one worker pool and one {@link StringTable}, and jars embedding a {@link StripIndex}
+     * only contribute their indexed classes. A StripIndex file describes a single jar, so it is not used here.<p>
+     * The embedded references of a jar only cover its own Strips, so a jar whose other classes
+     * may use what another root strips is read again for those references
+     * @param parallel If the classes should be scanned on all cores
+     * @param sink Receives the Strippable ClassNodes of all roots
+     * @return References of all roots to the stripped owners of the Strips
+     * @throws IOException Failed to read a root
+     */
+    private static ReferenceIndex scanRoots(boolean parallel, Consumer<ClassNode> sink) throws IOException {
+        StringTable strings = new StringTable();
+        List<MappedJarReader> readers = new ArrayList<>();
+        try {
+            List<Root> roots = roots(readers);
+            List<ClassBytes> sources = new ArrayList<>();
+            for (Root root : roots) {
+                sources.addAll(root.scanned());
+            }
+            List<StripIndex.Entry> strips = new ArrayList<>();
+            ReferenceIndex scanned = scanReferences(sources, ClassBytes::read, parallel, strings, strips, sink);
+
+            Set<String> owners = StripIndex.strippedOwners(strips);
+            ReferenceIndex references = new ReferenceIndex(owners);
+            references.add(scanned.getAllReferences());
+            for (Root root : roots) {
+                if (root.embedded() == null) {
+                    continue;
                 }
-            } catch (IOException ignored) {
-                try (Stream<Path> stream = Files.walk(jarPath)) {
-                    stream.filter(path -> path.toString().endsWith(".class"))
-                            .forEach(path -> {
-                                try (InputStream is = new FileInputStream(path.toFile())) {
-                                    ClassReader cr = new ClassReader(is);
-                                    nodes.add(MixinService.getService().getBytecodeProvider().getClassNode(cr.getClassName()));
-                                } catch (IOException | ClassNotFoundException e) {
-                                    throw new RuntimeException(e);
-                                }
-                            });
+                references.add(root.embedded().getReferences().getAllReferences());
+                Set<String> missing = new LinkedHashSet<>(owners);
+                missing.removeAll(root.embedded().strippedOwners());
+                if (!missing.isEmpty()) {
+                    ReferenceIndex crossRoot = new ReferenceIndex(missing);
+                    collectReferences(root.classes(), ClassBytes::read, crossRoot, parallel, strings);
+                    references.add(crossRoot.getAllReferences());
                 }
-            } catch (ClassNotFoundException e) {
-                throw new RuntimeException(e);
             }
+
+            if (StripEvents.isDebugEnabled()) {
+                StripEvents.debug("Scanned " + roots.size() + " roots, interning " + strings.size() + " strings");
+            }
+            return references;
+        } finally {
+            close(readers);
+        }
+    }
+
+    /**
+     * Lists the classes of your project and every scan root
+     * @param readers Receives the opened jars, which must stay open while the classes are read
+     * @return Classes of every root, in root order
+     * @throws IOException Failed to list a root
+     */
+    private static List<Root> roots(List<MappedJarReader> readers) throws IOException {
+        Set<Path> paths = new LinkedHashSet<>();
+        paths.add(jarPath);
+        paths.addAll(scanRoots);
+
+        List<Root> roots = new ArrayList<>();
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                List<ClassBytes> classes = new ArrayList<>();
+                try (Stream<Path> stream = Files.walk(path)) {
+                    stream.filter(file -> file.toString().endsWith(".class")).forEach(file -> classes.add(() -> Files.readAllBytes(file)));
+                }
+                roots.add(new Root(classes, null, classes));
+                continue;
+            }
+
+            MappedJarReader reader = MappedJarReader.open(path);
+            readers.add(reader);
+            Map<String, ClassBytes> classes = new LinkedHashMap<>();
+            for (MappedJarReader.Entry entry : reader.getEntries()) {
+                if (entry.isClass()) {
+                    classes.put(entry.name(), () -> reader.read(entry));
+                }
+            }
+            StripIndex embedded = StripIndex.readEmbedded(reader);
+            List<ClassBytes> scanned = embedded != null
+                    ? embedded.getClassNames().stream().map(name -> classes.get(name + ".class")).toList()
+                    : List.copyOf(classes.values());
+            roots.add(new Root(List.copyOf(classes.values()), embedded, scanned));
+        }
+        return roots;
+    }
+
+    private static void close(List<MappedJarReader> readers) throws IOException {
+        IOException failure = null;
+        for (MappedJarReader reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Replays a matching StripIndex, or scans all sources and rewrites the index
+     * @param sources Jar entries or class files to scan
+     * @param source Reads the class bytes of a source
+     * @param lookup Finds the source of an internal class name
+     * @param parallel If the sources should be scanned on a worker pool
+     * @param indexPath Path of the StripIndex file, or null to always scan
+     * @param hash Content hash of the sources, or null if there is no index
+     * @param sink Receives the Strippable ClassNodes
+     * @return References of the sources to the stripped owners of the Strips
+     * @throws IOException Failed to read a source
+     */
+    private static <T> ReferenceIndex scanWithIndex(List<T> sources, ClassSource<T> source, Function<String, T> lookup, boolean parallel, @Nullable Path indexPath, @Nullable String hash, Consumer<ClassNode> sink) throws IOException {
+        if (indexPath == null) {
+            return scanReferences(sources, source, parallel, null, new ArrayList<>(), sink);
+        }
+
+        StripIndex index = StripIndex.read(indexPath);
+        if (index != null && index.matches(hash)) {
+            if (StripEvents.isDebugEnabled()) {
+                StripEvents.debug("Replaying Strip Index " + indexPath);
+            }
+            List<T> indexed = index.getClassNames().stream().map(lookup).toList();
+            scan(indexed, parallel, source, false, null, null, sink);
+            return index.getReferences();
+        }
+
+        // The index is collected while the nodes stream past, before the sink can strip them
+        List<String> classNames = new ArrayList<>();
+        List<StripIndex.Entry> strips = new ArrayList<>();
+        ReferenceIndex references = scanReferences(sources, source, parallel, null, strips, node -> {
+            classNames.add(node.name);
+            sink.accept(node);
+        });
+        try {
+            StripIndex.of(hash, classNames, strips, references.getAllReferences()).write(indexPath);
+        } catch (IOException e) {
+            if (StripEvents.isDebugEnabled()) {
+                StripEvents.debug("Failed to write Strip Index " + indexPath + ": " + e);
+            }
+        }
+        return references;
+    }
+
+    /**
+     * Scans every source and collects its references to the classes edited by the Strips found along the way.<p>
+     * Each source records the hashes of the classes it names while it is read,
+     * so once the Strips are known only the sources naming one of their owners are read again
+     * @param sources Jar entries or class files to scan
+     * @param source Reads the class bytes of a source
+     * @param parallel If the sources should be scanned on a worker pool
+     * @param strings Table interning the strings of every class, or null to not intern
+     * @param strips Receives the Strips of every Strippable class
+     * @param sink Receives the Strippable ClassNodes, after their Strips are recorded
+     * @return References of the sources to the stripped owners of the Strips
+     * @throws IOException Failed to read a source
+     */
+    private static <T> ReferenceIndex scanReferences(List<T> sources, ClassSource<T> source, boolean parallel, @Nullable StringTable strings, List<StripIndex.Entry> strips, Consumer<ClassNode> sink) throws IOException {
+        Map<T, int[]> named = new ConcurrentHashMap<>();
+        scan(sources, parallel, source, true, strings, named, node -> {
+            strips.addAll(StripIndex.entriesOf(node));
+            sink.accept(node);
+        });
+
+        Set<String> owners = StripIndex.strippedOwners(strips);
+        ReferenceIndex references = new ReferenceIndex(owners);
+        if (owners.isEmpty()) {
+            return references;
+        }
+        Set<Integer> hashes = new HashSet<>();
+        for (String owner : owners) {
+            hashes.add(owner.hashCode());
+        }
+        List<T> candidates = sources.stream().filter(entry -> namesAny(named.get(entry), hashes)).toList();
+        collectReferences(candidates, source, references, parallel, strings);
+        if (StripEvents.isDebugEnabled()) {
+            StripEvents.debug("Collected references to " + owners.size() + " stripped owners from " + candidates.size() + " of " + sources.size() + " classes");
+        }
+        return references;
+    }
+
+    private static boolean namesAny(int @Nullable [] named, Set<Integer> hashes) {
+        if (named != null) {
+            for (int hash : named) {
+                if (hashes.contains(hash)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads every source once, pre-scans it, and builds full ClassNodes for the Strippable ones.<p>
+     * The nodes reach the sink in source order
+     * @param sources Jar entries or class files to scan
+     * @param parallel If the sources should be scanned on a worker pool
+     * @param source Reads the class bytes of a source
+     * @param preScan If non-Strippable classes still need to be filtered out
+     * @param strings Table interning the strings of every class, or null to not intern
+     * @param named Receives the {@link ConstantPool#classNameHashes} of every source, or null to not record them
+     * @param sink Receives the Strippable ClassNodes
+     * @throws IOException Failed to read a source
+     */
+    private static <T> void scan(List<T> sources, boolean parallel, ClassSource<T> source, boolean preScan, @Nullable StringTable strings, @Nullable Map<T, int[]> named, Consumer<ClassNode> sink) throws IOException {
+        Function<T, ClassNode> task = entry -> {
+            try {
+                byte[] bytes = source.read(entry);
+                ClassReader reader = strings != null ? strings.newReader(bytes) : new ClassReader(bytes);
+                if (named != null) {
+                    named.put(entry, ConstantPool.classNameHashes(reader));
+                }
+                if (preScan && !isStrippable(reader)) {
+                    return null;
+                }
+                ClassNode node = new ClassNode();
+                reader.accept(node, ClassReader.EXPAND_FRAMES);
+                return node;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+
+        StripEvents.count(StripCounter.ClassesScanned, sources.size());
+        forEach(sources, parallel, task, sink);
+    }
+
+    /**
+     * Collects the references of every class in your project to a set of owners into a {@link ReferenceIndex}.<p>
+     * The references collected by the last scan are used if they cover every owner, which they do
+     * unless something is stripped without a Strip annotation. Otherwise the project is read again,
+     * skipping classes whose constant pool names none of the owners without visiting their code
+     * @param owners Internal names of the classes whose references are indexed
+     * @param parallel If the classes should be read on all cores
+     * @return ReferenceIndex of the project
+     * @throws IOException Failed to read the jar
+     */
+    public static ReferenceIndex getReferences(Set<String> owners, boolean parallel) throws IOException {
+        ReferenceIndex scanned = scannedReferences;
+        scannedReferences = null;
+        if (scanned != null && scanned.covers(owners)) {
+            return scanned;
+        }
+
+        ReferenceIndex index = new ReferenceIndex(owners);
+        if (jarPath == null || owners.isEmpty()) {
+            return index;
+        }
+        if (StripEvents.isDebugEnabled()) {
+            StripEvents.debug("Reading the project again for the references to " + owners.size() + " stripped owners");
+        }
+        if (!scanRoots.isEmpty()) {
+            List<MappedJarReader> readers = new ArrayList<>();
+            try {
+                List<ClassBytes> sources = new ArrayList<>();
+                for (Root root : roots(readers)) {
+                    sources.addAll(root.classes());
+                }
+                collectReferences(sources, ClassBytes::read, index, parallel, new StringTable());
+            } finally {
+                close(readers);
+            }
+            return index;
+        }
+
+        if (Files.isDirectory(jarPath)) {
+            List<Path> paths;
+            try (Stream<Path> stream = Files.walk(jarPath)) {
+                paths = stream.filter(path -> path.toString().endsWith(".class")).toList();
+            }
+            collectReferences(paths, Files::readAllBytes, index, parallel, null);
+        } else {
+            try (MappedJarReader reader = MappedJarReader.open(jarPath)) {
+                List<MappedJarReader.Entry> entries = reader.getEntries().stream()
+                        .filter(MappedJarReader.Entry::isClass)
+                        .toList();
+                collectReferences(entries, reader::read, index, parallel, null);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Collects the references of every source into an index
+     * @param sources Jar entries or class files to read
+     * @param source Reads the class bytes of a source
+     * @param index ReferenceIndex to add the references to
+     * @param parallel If the sources should be read on a worker pool
+     * @param strings Table interning the strings of every class, or null to not intern
+     * @throws IOException Failed to read a source
+     */
+    static <T> void collectReferences(List<T> sources, ClassSource<T> source, ReferenceIndex index, boolean parallel, @Nullable StringTable strings) throws IOException {
+        List<List<ReferenceIndex.Reference>> found = map(sources, parallel, entry -> {
+            try {
+                byte[] bytes = source.read(entry);
+                ClassReader reader = strings != null ? strings.newReader(bytes) : new ClassReader(bytes);
+                return index.mayReference(reader) ? index.collect(reader) : null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        found.forEach(index::add);
+    }
+
+    /**
+     * Runs a task over every source, on a worker pool sized to the available cores if parallel.<p>
+     * Null results are dropped, and the others keep the source order
+     * @param sources Sources to run the task on
+     * @param parallel If the task should run on all cores
+     * @param task Task to run, which may throw an {@link UncheckedIOException}
+     * @return Immutable list of the non-null results
+     * @throws IOException A task failed to read its source
+     */
+    static <T, R> List<R> map(List<T> sources, boolean parallel, Function<T, R> task) throws IOException {
+        List<R> results = new ArrayList<>();
+        forEach(sources, parallel, task, results::add);
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Runs a task over every source, on a worker pool sized to the available cores if parallel,
+     * and hands each result to a sink as soon as it and every earlier one are done.<p>
+     * Null results are dropped, and the others reach the sink one at a time in source order, on the calling thread.
+     * Only a few tasks per worker run ahead of the sink, so results waiting for an earlier one never pile up
+     * @param sources Sources to run the task on
+     * @param parallel If the task should run on all cores
+     * @param task Task to run, which may throw an {@link UncheckedIOException}
+     * @param sink Receives the non-null results
+     * @throws IOException A task failed to read its source
+     */
+    static <T, R> void forEach(List<T> sources, boolean parallel, Function<T, R> task, Consumer<R> sink) throws IOException {
+        try {
+            // A single worker would only add a handoff per source
+            int threads = Runtime.getRuntime().availableProcessors();
+            if (!parallel || threads == 1) {
+                sources.stream().map(task).filter(Objects::nonNull).forEachOrdered(sink);
+                return;
+            }
+            try (ForkJoinPool pool = new ForkJoinPool(threads)) {
+                Deque<Future<R>> running = new ArrayDeque<>();
+                try {
+                    Iterator<T> next = sources.iterator();
+                    while (next.hasNext() || !running.isEmpty()) {
+                        while (next.hasNext() && running.size() < threads * WINDOW_PER_THREAD) {
+                            T source = next.next();
+                            running.add(pool.submit(() -> task.apply(source)));
+                        }
+                        R result = running.remove().get();
+                        if (result != null) {
+                            sink.accept(result);
+                        }
+                    }
+                } finally {
+                    running.forEach(future -> future.cancel(true));
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Checks the class-level annotations for {@link Strippable} without visiting any fields, methods, or code
+     * @param reader ClassReader of the class to check
+     * @return True if the class is annotated with Strippable
+     */
+    static boolean isStrippable(ClassReader reader) {
+        StrippableScanner scanner = new StrippableScanner();
+        reader.accept(scanner, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return scanner.strippable;
+    }
+
+    @FunctionalInterface
+    interface ClassSource<T> {
+        byte[] read(T source) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface ClassBytes {
+        byte[] read() throws IOException;
+    }
+
+    /**
+     * Classes of a scan root
+     * @param classes Every class of the root
+     * @param embedded StripIndex embedded in the root, or null
+     * @param scanned Classes to scan, which are only the indexed ones if the root embeds a StripIndex
+     */
+    private record Root(List<ClassBytes> classes, @Nullable StripIndex embedded, List<ClassBytes> scanned) {
+    }
+
+    private static final class StrippableScanner extends ClassVisitor {
+        private boolean strippable;
+
+        private StrippableScanner() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            if (visible && STRIPPABLE_DESC.equals(descriptor)) {
+                this.strippable = true;
+            }
+            return null;
         }
-        return nodes;
     }
 }
@@ -0,0 +1,139 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import com.github.tatercertified.asm_stripper.api.annotation.Strip;
+import com.github.tatercertified.asm_stripper.api.annotation.Strippable;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registry of the annotations ASM Stripper checks for.<p>
+ * Descriptors and retention are computed once, so {@link AbstractNode} can classify
+ * its annotations a single time into a bitmask of these entries
+ */
+public enum KnownAnnotation {
+    STRIP(Strip.class),
+    STRIPPABLE(Strippable.class),
+    MIXIN(Mixin.class),
+    SHADOW(Shadow.class);
+
+    private static final ClassValue<Info> INFO = new ClassValue<>() {
+        @Override
+        protected Info computeValue(Class<?> type) {
+            return Info.of(type);
+        }
+    };
+    private static final Map<String, KnownAnnotation> VISIBLE = new HashMap<>();
+    private static final Map<String, KnownAnnotation> INVISIBLE = new HashMap<>();
+
+    static {
+        for (KnownAnnotation known : values()) {
+            (known.visible ? VISIBLE : INVISIBLE).put(known.descriptor, known);
+        }
+    }
+
+    private final Class<? extends Annotation> type;
+    private final String descriptor;
+    private final boolean visible;
+    private final int mask;
+
+    KnownAnnotation(Class<? extends Annotation> type) {
+        // Enum constants are created before the static fields, so INFO cannot be used here
+        Info info = Info.of(type);
+        this.type = type;
+        this.descriptor = info.descriptor();
+        this.visible = info.visible();
+        this.mask = 1 << this.ordinal();
+    }
+
+    /**
+     * Gets the Annotation type
+     * @return Annotation type as a Class
+     */
+    public Class<? extends Annotation> getType() {
+        return this.type;
+    }
+
+    /**
+     * Gets the type descriptor of the Annotation
+     * @return Descriptor such as {@code Lcom/example/Foo;}
+     */
+    public String getDescriptor() {
+        return this.descriptor;
+    }
+
+    /**
+     * Gets the bit of this Annotation in a classification mask
+     * @return Single-bit mask
+     */
+    public int getMask() {
+        return this.mask;
+    }
+
+    /**
+     * Finds the registry entry for an Annotation type
+     * @param type Annotation type as a Class
+     * @return KnownAnnotation, or null if the type is not registered
+     */
+    @Nullable
+    public static KnownAnnotation of(Class<? extends Annotation> type) {
+        KnownAnnotation known = (isVisible(type) ? VISIBLE : INVISIBLE).get(descriptorOf(type));
+        return known != null && known.type == type ? known : null;
+    }
+
+    /**
+     * Classifies a list of AnnotationNodes into a mask, storing each recognized node by ordinal
+     * @param annotations AnnotationNodes of a class, method, or field, may be null
+     * @param visible If the list holds {@link RetentionPolicy#RUNTIME} Annotations
+     * @param found Recognized AnnotationNodes indexed by ordinal, filled in by this method
+     * @return Mask of every recognized Annotation in the list
+     */
+    public static int classify(@Nullable List<AnnotationNode> annotations, boolean visible, AnnotationNode[] found) {
+        int mask = 0;
+        if (annotations != null) {
+            Map<String, KnownAnnotation> registry = visible ? VISIBLE : INVISIBLE;
+            for (AnnotationNode annotation : annotations) {
+                KnownAnnotation known = registry.get(annotation.desc);
+                if (known != null && (mask & known.mask) == 0) {
+                    mask |= known.mask;
+                    found[known.ordinal()] = annotation;
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Gets the descriptor of any Annotation type, computed once per type
+     * @param type Annotation type as a Class
+     * @return Descriptor of the type
+     */
+    public static String descriptorOf(Class<? extends Annotation> type) {
+        return INFO.get(type).descriptor();
+    }
+
+    /**
+     * Gets if any Annotation type is kept as {@link RetentionPolicy#RUNTIME}, computed once per type
+     * @param type Annotation type as a Class
+     * @return True if the Annotation is stored in the visible Annotations
+     */
+    public static boolean isVisible(Class<? extends Annotation> type) {
+        return INFO.get(type).visible();
+    }
+
+    private record Info(String descriptor, boolean visible) {
+        private static Info of(Class<?> type) {
+            Retention retention = type.getAnnotation(Retention.class);
+            boolean visible = retention != null && retention.value() == RetentionPolicy.RUNTIME;
+            return new Info(type.descriptorString(), visible);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import com.github.tatercertified.asm_stripper.api.StripCounter;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the targets of lazy {@link StripPlan}s until their classes are transformed.<p>
+ * Classes can be transformed on several threads, so every target is handed out exactly once
+ */
+public final class LazyStrips {
+    private static final Map<String, List<StripPlan.Target>> PENDING = new ConcurrentHashMap<>();
+
+    /**
+     * Keeps every target of a plan that was registered by name, to be applied when its class is transformed
+     * @param plan Lazy StripPlan
+     */
+    public static void register(StripPlan plan) {
+        for (StripPlan.Target target : plan.getTargets()) {
+            if (target.getNode() == null) {
+                PENDING.computeIfAbsent(target.getName(), name -> new ArrayList<>()).add(target);
+            }
+        }
+        if (StripEvents.isDebugEnabled()) {
+            StripEvents.debug(PENDING.size() + " classes are waiting for lazy Strips");
+        }
+    }
+
+    /**
+     * Applies the pending Strips of a class, if there are any
+     * @param className Name of the class, either dotted or internal
+     * @param node ClassNode of the class
+     * @return True if any Strips were applied
+     */
+    public static boolean apply(String className, ClassNode node) {
+        List<StripPlan.Target> targets = PENDING.remove(className.replace('.', '/'));
+        if (targets == null) {
+            return false;
+        }
+        if (StripEvents.isDebugEnabled()) {
+            StripEvents.debug("Applying lazy Strips to " + node.name);
+        }
+        for (StripPlan.Target target : targets) {
+            target.apply(node);
+        }
+        StripEvents.count(StripCounter.TargetsResolved, 1);
+        return true;
+    }
+
+    /**
+     * Gets how many classes still have pending Strips
+     * @return Number of classes that were not transformed yet
+     */
+    public static int pendingCount() {
+        return PENDING.size();
+    }
+}
@@ -0,0 +1,311 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Reads a jar by memory-mapping it once and walking the zip central directory directly.<p>
+ * Entries are read from the mapped buffer with absolute reads, so a single reader can be shared between threads.
+ * A reader opened with {@link #openChannel(Path)} reads them with positional channel reads instead, and maps nothing
+ */
+public final class MappedJarReader implements AutoCloseable {
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_EOCD_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private final FileChannel channel;
+    private final long size;
+    @Nullable
+    private final ByteBuffer mapping;
+    private final List<Entry> entries;
+    private final Map<String, Entry> entriesByName = new HashMap<>();
+
+    private MappedJarReader(FileChannel channel, long size, @Nullable ByteBuffer mapping) throws IOException {
+        this.channel = channel;
+        this.size = size;
+        this.mapping = mapping;
+        this.entries = Collections.unmodifiableList(this.readCentralDirectory());
+        for (Entry entry : this.entries) {
+            this.entriesByName.put(entry.name(), entry);
+        }
+    }
+
+    /**
+     * Memory-maps a jar and reads its central directory.<p>
+     * A single mapping cannot be larger than 2 GB, so larger jars are read with positional channel reads as with {@link #openChannel(Path)}
+     * @param path Path to the jar
+     * @return MappedJarReader instance
+     * @throws IOException The file is not a readable zip
+     */
+    public static MappedJarReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return new MappedJarReader(channel, size, null);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new MappedJarReader(channel, size, mapped.order(ByteOrder.LITTLE_ENDIAN));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a jar without mapping it and reads its central directory.<p>
+     * Entries are read with positional channel reads, so nothing stays mapped once the reader is closed.
+     * A mapping is only released when it is garbage collected, and keeps the file from being replaced on Windows until then,
+     * so long-lived processes such as the Gradle daemon should read jars this way
+     * @param path Path to the jar
+     * @return MappedJarReader instance
+     * @throws IOException The file is not a readable zip
+     */
+    public static MappedJarReader openChannel(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MappedJarReader(channel, channel.size(), null);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets all entries in central directory order
+     * @return List of all entries
+     */
+    public List<Entry> getEntries() {
+        return this.entries;
+    }
+
+    /**
+     * Gets an entry by its name
+     * @param name Entry name, such as com/example/Foo.class
+     * @return Entry, or null if the jar does not contain it
+     */
+    @Nullable
+    public Entry getEntry(String name) {
+        return this.entriesByName.get(name);
+    }
+
+    /**
+     * Reads the uncompressed contents of an entry.<p>
+     * Stored entries are copied straight out of the jar, deflated entries are inflated from it
+     * @param entry Entry of this jar
+     * @return Uncompressed bytes of the entry
+     * @throws IOException The entry is corrupt or uses an unsupported compression method
+     */
+    public byte[] read(Entry entry) throws IOException {
+        ByteBuffer data = this.getRawData(entry);
+        byte[] bytes = new byte[Math.toIntExact(entry.size())];
+        switch (entry.method()) {
+            case ZipEntry.STORED -> data.get(bytes);
+            case ZipEntry.DEFLATED -> {
+                Inflater inflater = new Inflater(true);
+                try {
+                    inflater.setInput(data);
+                    int read = 0;
+                    while (read < bytes.length) {
+                        int inflated = inflater.inflate(bytes, read, bytes.length - read);
+                        if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                            throw new IOException("Truncated entry: " + entry.name());
+                        }
+                        read += inflated;
+                    }
+                } catch (DataFormatException e) {
+                    throw new IOException("Corrupt entry: " + entry.name(), e);
+                } finally {
+                    inflater.end();
+                }
+            }
+            default -> throw new IOException("Unsupported compression method " + entry.method() + " for " + entry.name());
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the still compressed data of an entry, as a view of the mapping or read from the channel
+     * @param entry Entry of this jar
+     * @return ByteBuffer positioned over the entry's compressed data
+     * @throws IOException The local header is corrupt
+     */
+    public ByteBuffer getRawData(Entry entry) throws IOException {
+        ByteBuffer header = this.slice(entry.localHeaderOffset(), 30);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new IOException("Bad local header for " + entry.name());
+        }
+        long dataStart = entry.localHeaderOffset() + 30 + u16(header, 26) + u16(header, 28);
+        return this.slice(dataStart, Math.toIntExact(entry.compressedSize()));
+    }
+
+    /**
+     * Gets a region of the jar, as a view of the mapping or read from the channel
+     * @param position Offset of the region in the jar
+     * @param length Length of the region
+     * @return Little-endian ByteBuffer over the region
+     * @throws IOException The region goes past the end of the jar
+     */
+    private ByteBuffer slice(long position, int length) throws IOException {
+        if (position < 0 || position + length > this.size) {
+            throw new EOFException("Region at " + position + " goes past the end of the jar");
+        }
+        if (this.mapping != null) {
+            return this.mapping.slice(Math.toIntExact(position), length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            // Positional reads leave the channel position alone, so threads can share the channel
+            if (this.channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Region at " + position + " goes past the end of the jar");
+            }
+        }
+        return buffer.flip().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private List<Entry> readCentralDirectory() throws IOException {
+        long eocdPosition = this.findEndOfCentralDirectory();
+        ByteBuffer eocd = this.slice(eocdPosition, EOCD_SIZE);
+        long count = u16(eocd, 10);
+        long directoryLength = u32(eocd, 12);
+        long offset = u32(eocd, 16);
+
+        if (count == 0xFFFF || directoryLength == 0xFFFFFFFFL || offset == 0xFFFFFFFFL) {
+            long locatorPosition = eocdPosition - 20;
+            ByteBuffer locator = locatorPosition < 0 ? null : this.slice(locatorPosition, 20);
+            if (locator == null || locator.getInt(0) != ZIP64_EOCD_LOCATOR_SIGNATURE) {
+                throw new IOException("Missing zip64 end of central directory locator");
+            }
+            ByteBuffer zip64Eocd = this.slice(locator.getLong(8), 56);
+            if (zip64Eocd.getInt(0) != ZIP64_EOCD_SIGNATURE) {
+                throw new IOException("Bad zip64 end of central directory");
+            }
+            count = zip64Eocd.getLong(32);
+            directoryLength = zip64Eocd.getLong(40);
+            offset = zip64Eocd.getLong(48);
+        }
+
+        ByteBuffer directory = this.slice(offset, Math.toIntExact(directoryLength));
+        List<Entry> result = new ArrayList<>(Math.toIntExact(count));
+        int pos = 0;
+        for (long i = 0; i < count; i++) {
+            if (directory.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+                throw new IOException("Bad central directory header at " + (offset + pos));
+            }
+            int flags = u16(directory, pos + 8);
+            int method = u16(directory, pos + 10);
+            long dosTime = u32(directory, pos + 12);
+            long crc = u32(directory, pos + 16);
+            long compressedSize = u32(directory, pos + 20);
+            long size = u32(directory, pos + 24);
+            int nameLength = u16(directory, pos + 28);
+            int extraLength = u16(directory, pos + 30);
+            int commentLength = u16(directory, pos + 32);
+            long localHeaderOffset = u32(directory, pos + 42);
+
+            byte[] nameBytes = new byte[nameLength];
+            directory.get(pos + 46, nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            if (size == 0xFFFFFFFFL || compressedSize == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL) {
+                // Zip64 extra field holds the real values, in this order, only for the fields that overflowed
+                int extra = pos + 46 + nameLength;
+                int extraEnd = extra + extraLength;
+                while (extra + 4 <= extraEnd) {
+                    int id = u16(directory, extra);
+                    int length = u16(directory, extra + 2);
+                    if (id == ZIP64_EXTRA_ID) {
+                        int field = extra + 4;
+                        if (size == 0xFFFFFFFFL) {
+                            size = directory.getLong(field);
+                            field += 8;
+                        }
+                        if (compressedSize == 0xFFFFFFFFL) {
+                            compressedSize = directory.getLong(field);
+                            field += 8;
+                        }
+                        if (localHeaderOffset == 0xFFFFFFFFL) {
+                            localHeaderOffset = directory.getLong(field);
+                        }
+                        break;
+                    }
+                    extra += 4 + length;
+                }
+            }
+
+            result.add(new Entry(name, flags, method, dosTime, crc, compressedSize, size, localHeaderOffset));
+            pos += 46 + nameLength + extraLength + commentLength;
+        }
+        return result;
+    }
+
+    private long findEndOfCentralDirectory() throws IOException {
+        if (this.size < EOCD_SIZE) {
+            throw new IOException("Missing end of central directory");
+        }
+        // The record sits at the very end, only followed by a comment of up to 65535 bytes
+        long start = Math.max(0, this.size - EOCD_SIZE - 0xFFFF);
+        ByteBuffer tail = this.slice(start, Math.toIntExact(this.size - start));
+        for (int pos = tail.limit() - EOCD_SIZE; pos >= 0; pos--) {
+            if (tail.getInt(pos) == EOCD_SIGNATURE) {
+                return start + pos;
+            }
+        }
+        throw new IOException("Missing end of central directory");
+    }
+
+    private static int u16(ByteBuffer buffer, int index) {
+        return Short.toUnsignedInt(buffer.getShort(index));
+    }
+
+    private static long u32(ByteBuffer buffer, int index) {
+        return Integer.toUnsignedLong(buffer.getInt(index));
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * A file inside the jar, as described by the central directory
+     * @param name Entry name
+     * @param flags General purpose flags
+     * @param method Compression method, either {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+     * @param dosTime Last modification time and date, packed in MS-DOS format
+     * @param crc CRC-32 of the uncompressed data
+     * @param compressedSize Size of the compressed data
+     * @param size Size of the uncompressed data
+     * @param localHeaderOffset Offset of the entry's local header
+     */
+    public record Entry(String name, int flags, int method, long dosTime, long crc, long compressedSize, long size, long localHeaderOffset) {
+        /**
+         * Gets if the entry is a class file
+         * @return True if the name ends in .class
+         */
+        public boolean isClass() {
+            return this.name.endsWith(".class");
+        }
+    }
+}
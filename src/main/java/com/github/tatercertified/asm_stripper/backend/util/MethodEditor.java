@@ -0,0 +1,366 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the edits for a single method and applies them together, the editing engine shared by every stripper.<p>
+ * Every edit becomes a range of instructions and the instructions replacing it.
+ * Instructions consuming stack values are removed along with the exact instructions producing those values.
+ * The producers come from one {@link SourceInterpreter} analysis of the method, run on the first such edit,
+ * so every site in the method shares it. When the producers cannot be cut out cleanly,
+ * the operands are popped instead, so the edited method always keeps a valid stack.<p>
+ * All ranges are found on the unedited method, merged where they overlap, and spliced in one pass,
+ * so overlapping Strips never remove or replace the same instructions twice
+ */
+public final class MethodEditor {
+    private static final Type[] NO_OPERANDS = new Type[0];
+
+    private final String owner;
+    private final MethodNode method;
+    private final List<Site> sites = new ArrayList<>();
+
+    private boolean analyzed;
+    @Nullable
+    private Frame<SourceValue>[] frames;
+    @Nullable
+    private Map<LabelNode, List<AbstractInsnNode>> jumpSources;
+    @Nullable
+    private Set<LabelNode> tryCatchLabels;
+
+    /**
+     * Creates an editor for a method
+     * @param owner Internal name of the class declaring the method
+     * @param method Method to edit
+     */
+    public MethodEditor(String owner, MethodNode method) {
+        this.owner = owner;
+        this.method = method;
+    }
+
+    /**
+     * Gets the class declaring the method being edited
+     * @return Internal name of the class
+     */
+    public String getOwner() {
+        return this.owner;
+    }
+
+    /**
+     * Gets the method being edited
+     * @return MethodNode of the method
+     */
+    public MethodNode getMethod() {
+        return this.method;
+    }
+
+    /**
+     * Removes a single instruction
+     * @param insn Instruction to remove
+     */
+    public void remove(AbstractInsnNode insn) {
+        this.replace(insn, new InsnList());
+    }
+
+    /**
+     * Replaces a single instruction
+     * @param insn Instruction to replace
+     * @param replacement Instructions to put in its place, leaving the stack as the instruction did
+     */
+    public void replace(AbstractInsnNode insn, InsnList replacement) {
+        this.sites.add(new Site(insn, NO_OPERANDS, Type.VOID_TYPE, replacement));
+    }
+
+    /**
+     * Removes an instruction along with the instructions that produce its operands.<p>
+     * If the instruction leaves a value on the stack, a default value of that type is pushed in its place
+     * @param consumer Instruction to remove
+     * @param operands Types of the stack values the instruction consumes, deepest first
+     * @param result Type of the value the instruction pushes, or {@link Type#VOID_TYPE}
+     */
+    public void removeWithOperands(AbstractInsnNode consumer, Type[] operands, Type result) {
+        this.sites.add(new Site(consumer, operands, result, null));
+    }
+
+    /**
+     * Checks if any edits were collected
+     * @return True if applying would change the method
+     */
+    public boolean hasEdits() {
+        return !this.sites.isEmpty();
+    }
+
+    /**
+     * Applies every collected edit to the method
+     * @return Number of instructions removed
+     */
+    public int apply() {
+        // Ranges hold indices into the unedited method, so they are all found before anything is inserted or removed
+        List<Range> ranges = new ArrayList<>(this.sites.size());
+        for (Site site : this.sites) {
+            ranges.add(this.findRange(site));
+        }
+        ranges.sort(Comparator.comparingInt(Range::start).thenComparing(Comparator.comparingInt(Range::end).reversed()));
+
+        // A range nested in another is removed by the outer one. Ranges come from stack-balanced expressions,
+        // so they only ever nest, but a partial overlap is joined into one range rather than edited twice
+        List<Range> merged = new ArrayList<>(ranges.size());
+        for (Range range : ranges) {
+            Range last = merged.isEmpty() ? null : merged.getLast();
+            if (last == null || range.start() > last.end()) {
+                merged.add(range);
+            } else if (range.end() > last.end()) {
+                last.replacement().add(range.replacement());
+                merged.set(merged.size() - 1, new Range(last.start(), range.end(), last.first(), range.last(), last.replacement()));
+            }
+        }
+
+        InsnList instructions = this.method.instructions;
+        int removed = 0;
+        for (Range range : merged) {
+            AbstractInsnNode end = range.last().getNext();
+            AbstractInsnNode insn = range.first();
+            while (insn != end) {
+                AbstractInsnNode next = insn.getNext();
+                // Labels and line numbers may still be referenced by debug info, so they stay
+                if (!(insn instanceof LabelNode) && !(insn instanceof LineNumberNode)) {
+                    instructions.remove(insn);
+                    removed++;
+                }
+                insn = next;
+            }
+            if (range.replacement().size() > 0) {
+                if (end != null) {
+                    instructions.insertBefore(end, range.replacement());
+                } else {
+                    instructions.add(range.replacement());
+                }
+            }
+        }
+        return removed;
+    }
+
+    private Range findRange(Site site) {
+        InsnList instructions = this.method.instructions;
+        int end = instructions.indexOf(site.consumer());
+        int operands = site.operands().length;
+        if (operands == 0) {
+            return range(end, end, site.consumer(), site);
+        }
+
+        Frame<SourceValue>[] frames = this.analyze();
+        if (frames == null || frames[end] == null) {
+            return range(end, end, site.consumer(), site);
+        }
+
+        // Walk back to the last point where the stack held only the values below the operands.
+        // A jump into the range from before it means the range started earlier, so the walk resumes from the jump
+        int base = frames[end].getStackSize() - operands;
+        int start = end;
+        boolean extended = true;
+        while (extended) {
+            while (start > 0 && frames[start] != null && frames[start].getStackSize() > base) {
+                start--;
+            }
+            if (frames[start] == null || frames[start].getStackSize() != base) {
+                return range(end, end, site.consumer(), site);
+            }
+
+            extended = false;
+            for (int i = start; i < end; i++) {
+                if (instructions.get(i) instanceof LabelNode label) {
+                    for (AbstractInsnNode jump : this.jumpSources.getOrDefault(label, List.of())) {
+                        int index = instructions.indexOf(jump);
+                        if (index < start) {
+                            start = index;
+                            extended = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (!this.isSelfContained(start, end, base)) {
+            return range(end, end, site.consumer(), site);
+        }
+        return range(start, end, instructions.get(start), site);
+    }
+
+    private static Range range(int start, int end, AbstractInsnNode first, Site site) {
+        InsnList replacement = site.replacement();
+        if (replacement == null) {
+            // Operands left on the stack are popped, and a removed result is replaced by its default value
+            replacement = new InsnList();
+            if (start == end) {
+                popOperands(site.operands(), replacement);
+            }
+            pushDefault(site.result(), replacement);
+        }
+        return new Range(start, end, first, site.consumer(), replacement);
+    }
+
+    private boolean isSelfContained(int start, int end, int base) {
+        InsnList instructions = this.method.instructions;
+        Frame<SourceValue> startFrame = this.frames[start];
+        Frame<SourceValue> endFrame = this.frames[end];
+
+        // Values below the operands must be untouched, and every operand must be produced inside the range
+        for (int i = 0; i < base; i++) {
+            if (startFrame.getStack(i) != endFrame.getStack(i)) {
+                return false;
+            }
+        }
+        for (int i = base; i < endFrame.getStackSize(); i++) {
+            for (AbstractInsnNode source : endFrame.getStack(i).insns) {
+                int index = instructions.indexOf(source);
+                if (index < start || index >= end) {
+                    return false;
+                }
+            }
+        }
+
+        // Control flow must stay inside the range
+        for (int i = start; i < end; i++) {
+            AbstractInsnNode insn = instructions.get(i);
+            if (this.frames[i] == null) {
+                return false;
+            }
+            switch (insn) {
+                case LabelNode label -> {
+                    if (this.tryCatchLabels.contains(label)) {
+                        return false;
+                    }
+                    for (AbstractInsnNode jump : this.jumpSources.getOrDefault(label, List.of())) {
+                        int index = instructions.indexOf(jump);
+                        if (index < start || index >= end) {
+                            return false;
+                        }
+                    }
+                }
+                case JumpInsnNode jump -> {
+                    if (jump.getOpcode() == Opcodes.JSR || !isInside(instructions, jump.label, start, end)) {
+                        return false;
+                    }
+                }
+                case TableSwitchInsnNode table -> {
+                    if (!isInside(instructions, table.dflt, start, end) || !table.labels.stream().allMatch(label -> isInside(instructions, label, start, end))) {
+                        return false;
+                    }
+                }
+                case LookupSwitchInsnNode lookup -> {
+                    if (!isInside(instructions, lookup.dflt, start, end) || !lookup.labels.stream().allMatch(label -> isInside(instructions, label, start, end))) {
+                        return false;
+                    }
+                }
+                case FrameNode ignored -> {
+                }
+                default -> {
+                    int opcode = insn.getOpcode();
+                    if ((opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN) || opcode == Opcodes.ATHROW || opcode == Opcodes.RET) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private Frame<SourceValue>[] analyze() {
+        if (this.analyzed) {
+            return this.frames;
+        }
+        this.analyzed = true;
+
+        try {
+            this.frames = new Analyzer<>(new SourceInterpreter()).analyze(this.owner, this.method);
+        } catch (AnalyzerException e) {
+            if (StripEvents.isDebugEnabled()) {
+                StripEvents.debug("Could not analyze " + this.owner + "." + this.method.name + this.method.desc + ", popping operands instead: " + e.getMessage());
+            }
+            return null;
+        }
+
+        this.jumpSources = new HashMap<>();
+        for (AbstractInsnNode insn : this.method.instructions) {
+            switch (insn) {
+                case JumpInsnNode jump -> this.addJumpSource(jump.label, jump);
+                case TableSwitchInsnNode table -> {
+                    this.addJumpSource(table.dflt, table);
+                    table.labels.forEach(label -> this.addJumpSource(label, table));
+                }
+                case LookupSwitchInsnNode lookup -> {
+                    this.addJumpSource(lookup.dflt, lookup);
+                    lookup.labels.forEach(label -> this.addJumpSource(label, lookup));
+                }
+                default -> {
+                }
+            }
+        }
+        this.tryCatchLabels = new HashSet<>();
+        for (TryCatchBlockNode tryCatch : this.method.tryCatchBlocks) {
+            this.tryCatchLabels.add(tryCatch.start);
+            this.tryCatchLabels.add(tryCatch.end);
+            this.tryCatchLabels.add(tryCatch.handler);
+        }
+        return this.frames;
+    }
+
+    private void addJumpSource(LabelNode label, AbstractInsnNode source) {
+        this.jumpSources.computeIfAbsent(label, key -> new ArrayList<>(1)).add(source);
+    }
+
+    private static boolean isInside(InsnList instructions, LabelNode label, int start, int end) {
+        int index = instructions.indexOf(label);
+        return index >= start && index < end;
+    }
+
+    private static void popOperands(Type[] operands, InsnList list) {
+        for (int i = operands.length - 1; i >= 0; i--) {
+            list.add(new InsnNode(operands[i].getSize() == 2 ? Opcodes.POP2 : Opcodes.POP));
+        }
+    }
+
+    private static void pushDefault(Type type, InsnList list) {
+        switch (type.getSort()) {
+            case Type.VOID -> {
+            }
+            case Type.BOOLEAN, Type.CHAR, Type.BYTE, Type.SHORT, Type.INT -> list.add(new InsnNode(Opcodes.ICONST_0));
+            case Type.FLOAT -> list.add(new InsnNode(Opcodes.FCONST_0));
+            case Type.LONG -> list.add(new InsnNode(Opcodes.LCONST_0));
+            case Type.DOUBLE -> list.add(new InsnNode(Opcodes.DCONST_0));
+            default -> list.add(new InsnNode(Opcodes.ACONST_NULL));
+        }
+    }
+
+    private record Site(AbstractInsnNode consumer, Type[] operands, Type result, @Nullable InsnList replacement) {
+    }
+
+    private record Range(int start, int end, AbstractInsnNode first, AbstractInsnNode last, InsnList replacement) {
+    }
+}
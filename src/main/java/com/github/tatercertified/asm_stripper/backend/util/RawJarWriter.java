@@ -0,0 +1,202 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes a jar entry by entry, copying unchanged entries from a {@link MappedJarReader} without inflating them.<p>
+ * Only the central directory records are kept until {@link #close()}, so memory use does not grow with the entry data
+ */
+public final class RawJarWriter implements AutoCloseable {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_EOCD_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int DATA_DESCRIPTOR_FLAG = 0x08;
+    private static final int UTF8_FLAG = 0x800;
+    private static final int VERSION = 20;
+    private static final int ZIP64_VERSION = 45;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private final OutputStream out;
+    private final WritableByteChannel channel;
+    private final List<Record> records = new ArrayList<>();
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private long offset;
+
+    /**
+     * Creates a writer
+     * @param out Stream the jar is written to, closed along with the writer
+     */
+    public RawJarWriter(OutputStream out) {
+        this.out = out;
+        this.channel = Channels.newChannel(out);
+    }
+
+    /**
+     * Copies an entry with its compressed data as it is
+     * @param reader Reader of the source jar
+     * @param entry Entry of the source jar
+     * @throws IOException Failed to read the entry or write it
+     */
+    public void copy(MappedJarReader reader, MappedJarReader.Entry entry) throws IOException {
+        // Sizes and CRC are known up front, so the copy never needs a data descriptor
+        Record record = new Record(entry.name(), entry.flags() & ~DATA_DESCRIPTOR_FLAG, entry.method(), entry.dosTime(),
+                entry.crc(), entry.compressedSize(), entry.size(), this.offset);
+        this.writeLocalHeader(record);
+        ByteBuffer data = reader.getRawData(entry);
+        while (data.hasRemaining()) {
+            this.offset += this.channel.write(data);
+        }
+        this.records.add(record);
+    }
+
+    /**
+     * Writes a new entry, deflating it
+     * @param name Entry name
+     * @param dosTime Last modification time and date, packed in MS-DOS format
+     * @param bytes Uncompressed contents of the entry
+     * @throws IOException Failed to write the entry
+     */
+    public void write(String name, long dosTime, byte[] bytes) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2 + 64);
+        byte[] buffer = new byte[8192];
+        this.deflater.reset();
+        this.deflater.setInput(bytes);
+        this.deflater.finish();
+        while (!this.deflater.finished()) {
+            compressed.write(buffer, 0, this.deflater.deflate(buffer));
+        }
+
+        Record record = new Record(name, UTF8_FLAG, ZipEntry.DEFLATED, dosTime, crc.getValue(), compressed.size(), bytes.length, this.offset);
+        this.writeLocalHeader(record);
+        compressed.writeTo(this.out);
+        this.offset += compressed.size();
+        this.records.add(record);
+    }
+
+    private void writeLocalHeader(Record record) throws IOException {
+        this.checkSize(record.compressedSize(), record.name());
+        this.checkSize(record.size(), record.name());
+
+        byte[] name = record.name().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(30 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(LOCAL_HEADER_SIGNATURE);
+        header.putShort((short) VERSION);
+        header.putShort((short) record.flags());
+        header.putShort((short) record.method());
+        header.putInt((int) record.dosTime());
+        header.putInt((int) record.crc());
+        header.putInt((int) record.compressedSize());
+        header.putInt((int) record.size());
+        header.putShort((short) name.length);
+        header.putShort((short) 0);
+        header.put(name);
+        this.out.write(header.array());
+        this.offset += header.capacity();
+    }
+
+    private void checkSize(long value, String name) throws IOException {
+        // Entry data is held in a single buffer and never reaches the zip64 sizes, only offsets and the entry count can
+        if (value >= 0xFFFFFFFFL) {
+            throw new IOException("Entry is too large for the output jar: " + name);
+        }
+    }
+
+    /**
+     * Writes the central directory and closes the stream
+     * @throws IOException Failed to write the central directory
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            long centralStart = this.offset;
+            for (Record record : this.records) {
+                byte[] name = record.name().getBytes(StandardCharsets.UTF_8);
+                // Past 4 GB, the local header offset moves to a zip64 extra field
+                boolean zip64Offset = record.offset() >= 0xFFFFFFFFL;
+                int extraLength = zip64Offset ? 12 : 0;
+                ByteBuffer header = ByteBuffer.allocate(46 + name.length + extraLength).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(CENTRAL_HEADER_SIGNATURE);
+                header.putShort((short) (zip64Offset ? ZIP64_VERSION : VERSION));
+                header.putShort((short) (zip64Offset ? ZIP64_VERSION : VERSION));
+                header.putShort((short) record.flags());
+                header.putShort((short) record.method());
+                header.putInt((int) record.dosTime());
+                header.putInt((int) record.crc());
+                header.putInt((int) record.compressedSize());
+                header.putInt((int) record.size());
+                header.putShort((short) name.length);
+                header.putShort((short) extraLength);
+                header.putShort((short) 0);
+                header.putShort((short) 0);
+                header.putShort((short) 0);
+                header.putInt(0);
+                header.putInt(zip64Offset ? 0xFFFFFFFF : (int) record.offset());
+                header.put(name);
+                if (zip64Offset) {
+                    header.putShort((short) ZIP64_EXTRA_ID);
+                    header.putShort((short) 8);
+                    header.putLong(record.offset());
+                }
+                this.out.write(header.array());
+                this.offset += header.capacity();
+            }
+            long centralSize = this.offset - centralStart;
+
+            boolean zip64 = this.records.size() >= 0xFFFF || centralStart >= 0xFFFFFFFFL || centralSize >= 0xFFFFFFFFL;
+            if (zip64) {
+                long zip64Start = this.offset;
+                ByteBuffer zip64Eocd = ByteBuffer.allocate(56 + 20).order(ByteOrder.LITTLE_ENDIAN);
+                zip64Eocd.putInt(ZIP64_EOCD_SIGNATURE);
+                zip64Eocd.putLong(44);
+                zip64Eocd.putShort((short) ZIP64_VERSION);
+                zip64Eocd.putShort((short) ZIP64_VERSION);
+                zip64Eocd.putInt(0);
+                zip64Eocd.putInt(0);
+                zip64Eocd.putLong(this.records.size());
+                zip64Eocd.putLong(this.records.size());
+                zip64Eocd.putLong(centralSize);
+                zip64Eocd.putLong(centralStart);
+                zip64Eocd.putInt(ZIP64_EOCD_LOCATOR_SIGNATURE);
+                zip64Eocd.putInt(0);
+                zip64Eocd.putLong(zip64Start);
+                zip64Eocd.putInt(1);
+                this.out.write(zip64Eocd.array());
+                this.offset += zip64Eocd.capacity();
+            }
+
+            ByteBuffer eocd = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN);
+            eocd.putInt(EOCD_SIGNATURE);
+            eocd.putShort((short) 0);
+            eocd.putShort((short) 0);
+            eocd.putShort((short) (zip64 ? 0xFFFF : this.records.size()));
+            eocd.putShort((short) (zip64 ? 0xFFFF : this.records.size()));
+            eocd.putInt(zip64 ? 0xFFFFFFFF : (int) centralSize);
+            eocd.putInt(zip64 ? 0xFFFFFFFF : (int) centralStart);
+            eocd.putShort((short) 0);
+            this.out.write(eocd.array());
+        } finally {
+            this.deflater.end();
+            this.out.close();
+        }
+    }
+
+    private record Record(String name, int flags, int method, long dosTime, long crc, long compressedSize, long size, long offset) {
+    }
+}
@@ -0,0 +1,190 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Jar-wide index of the classes referencing a set of classes, grouped as owner, then member, then referencing classes.<p>
+ * The index is built once per jar, so finding the usages of a stripped class or member is a lookup
+ * instead of a walk over every class. Classes whose constant pool names none of the indexed owners are skipped
+ * without visiting their code. Only class names are kept, as editing a class walks its methods anyway,
+ * skipping those that name none of the stripped owners
+ */
+public final class ReferenceIndex {
+    /**
+     * Member under which instructions using the owner as a type are indexed, such as {@code new} and {@code checkcast}
+     */
+    public static final Member TYPE = new Member("", "");
+
+    @Nullable
+    private final Set<String> owners;
+    private final Map<String, Map<Member, Set<String>>> references = new LinkedHashMap<>();
+
+    /**
+     * Creates an empty index
+     * @param owners Internal names of the classes whose references are indexed, or null to index every reference
+     */
+    public ReferenceIndex(@Nullable Set<String> owners) {
+        this.owners = owners;
+    }
+
+    /**
+     * Checks if the index holds every reference to a set of classes
+     * @param owners Internal names of the classes
+     * @return True if all of them are indexed owners
+     */
+    public boolean covers(Set<String> owners) {
+        return this.owners == null || this.owners.containsAll(owners);
+    }
+
+    /**
+     * Checks the constant pool of a class for any indexed owner, without visiting its code
+     * @param reader ClassReader of the class
+     * @return False if the class cannot reference any indexed owner
+     */
+    public boolean mayReference(ClassReader reader) {
+        return this.owners == null || ConstantPool.namesAnyClass(reader, this.owners);
+    }
+
+    /**
+     * Collects the references of a class to the indexed owners.<p>
+     * This only reads the class, so it can run on several threads before the results are {@link #add added}
+     * @param reader ClassReader of the class
+     * @return References found in the class, each member listed once
+     */
+    public List<Reference> collect(ClassReader reader) {
+        Collector collector = new Collector(this.owners);
+        reader.accept(collector, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return new ArrayList<>(collector.found);
+    }
+
+    /**
+     * Adds collected references to the index
+     * @param found References returned by {@link #collect}
+     */
+    public void add(List<Reference> found) {
+        for (Reference reference : found) {
+            this.references.computeIfAbsent(reference.owner(), owner -> new LinkedHashMap<>())
+                    .computeIfAbsent(reference.member(), member -> new LinkedHashSet<>())
+                    .add(reference.className());
+        }
+    }
+
+    /**
+     * Gets every indexed reference, to store the index or merge it into another one
+     * @return References in the order they were added
+     */
+    public List<Reference> getAllReferences() {
+        List<Reference> all = new ArrayList<>();
+        this.references.forEach((owner, members) -> members.forEach((member, classes) -> {
+            for (String className : classes) {
+                all.add(new Reference(owner, member, className));
+            }
+        }));
+        return all;
+    }
+
+    /**
+     * Gets every indexed reference to a class, grouped by member
+     * @param owner Internal name of the class
+     * @return Unmodifiable map of members to the classes referencing them
+     */
+    public Map<Member, Set<String>> getReferences(String owner) {
+        return Collections.unmodifiableMap(this.references.getOrDefault(owner, Map.of()));
+    }
+
+    /**
+     * Gets the classes referencing a class in any way
+     * @param owner Internal name of the class
+     * @return Internal names of the referencing classes
+     */
+    public Set<String> getReferencingClasses(String owner) {
+        Set<String> classes = new LinkedHashSet<>();
+        for (Set<String> referencing : this.getReferences(owner).values()) {
+            classes.addAll(referencing);
+        }
+        return classes;
+    }
+
+    /**
+     * Gets the classes referencing a member
+     * @param owner Internal name of the class declaring the member
+     * @param name Name of the member
+     * @param desc Descriptor of the member
+     * @return Unmodifiable set of the internal names of the referencing classes
+     */
+    public Set<String> getReferencingClasses(String owner, String name, String desc) {
+        return Collections.unmodifiableSet(this.getReferences(owner).getOrDefault(new Member(name, desc), Set.of()));
+    }
+
+    /**
+     * A field, method, or {@link #TYPE} of an owner class
+     * @param name Member name
+     * @param desc Member descriptor
+     */
+    public record Member(String name, String desc) {
+    }
+
+    /**
+     * A collected reference, before it is added to the index
+     * @param owner Internal name of the referenced class
+     * @param member Referenced member
+     * @param className Internal name of the referencing class
+     */
+    public record Reference(String owner, Member member, String className) {
+    }
+
+    private static final class Collector extends ClassVisitor {
+        @Nullable
+        private final Set<String> owners;
+        private final Set<Reference> found = new LinkedHashSet<>();
+        private String className;
+
+        private Collector(@Nullable Set<String> owners) {
+            super(Opcodes.ASM9);
+            this.owners = owners;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.className = name;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            return new MethodVisitor(Opcodes.ASM9) {
+                @Override
+                public void visitTypeInsn(int opcode, String type) {
+                    Collector.this.add(type, TYPE);
+                }
+
+                @Override
+                public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+                    Collector.this.add(owner, new Member(name, descriptor));
+                }
+
+                @Override
+                public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+                    Collector.this.add(owner, new Member(name, descriptor));
+                }
+            };
+        }
+
+        private void add(String owner, Member member) {
+            if (this.owners == null || this.owners.contains(owner)) {
+                this.found.add(new Reference(owner, member, this.className));
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import org.objectweb.asm.ClassReader;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Intern table shared by every reader of a scan, so equal names and descriptors read from different classes are one String.<p>
+ * Jars of the same classpath reference the same owners and descriptors over and over,
+ * so interning keeps the ClassNodes of a many-jar scan from holding a copy per class
+ */
+public final class StringTable {
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the shared instance of a String
+     * @param string String to intern
+     * @return The first equal String added to this table
+     */
+    public String intern(String string) {
+        String existing = this.strings.putIfAbsent(string, string);
+        return existing != null ? existing : string;
+    }
+
+    /**
+     * Creates a ClassReader whose constant pool strings are interned in this table
+     * @param classBytes Bytes of the class
+     * @return ClassReader instance
+     */
+    public ClassReader newReader(byte[] classBytes) {
+        return new ClassReader(classBytes) {
+            @Override
+            public String readUTF8(int offset, char[] charBuffer) {
+                String string = super.readUTF8(offset, charBuffer);
+                return string != null ? StringTable.this.intern(string) : null;
+            }
+        };
+    }
+
+    /**
+     * Gets how many distinct Strings were interned
+     * @return Number of Strings in this table
+     */
+    public int size() {
+        return this.strings.size();
+    }
+}
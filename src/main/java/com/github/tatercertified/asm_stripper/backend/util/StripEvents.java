@@ -0,0 +1,139 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import com.github.tatercertified.asm_stripper.api.StripCounter;
+import com.github.tatercertified.asm_stripper.api.StripListener;
+import com.github.tatercertified.asm_stripper.api.StripPhase;
+import com.github.tatercertified.asm_stripper.backend.jfr.PhaseEvent;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Dispatches events to the registered {@link StripListener}s.<p>
+ * Every method returns immediately while no listener is registered,
+ * and callers guard message building with {@link StripEvents#isDebugEnabled()}.
+ * Phases are also recorded as JFR {@link PhaseEvent}s whenever a recording enables them
+ */
+public final class StripEvents {
+    // Errors are never dropped, so they go to the default StripListener#onError while no listener is registered
+    private static final StripListener FALLBACK = new StripListener() {
+    };
+    private static volatile StripListener[] listeners = new StripListener[0];
+
+    /**
+     * Registers a listener
+     * @param listener StripListener instance
+     */
+    public static synchronized void register(StripListener listener) {
+        StripListener[] current = listeners;
+        StripListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        listeners = updated;
+    }
+
+    /**
+     * Unregisters a listener
+     * @param listener StripListener instance
+     */
+    public static synchronized void unregister(StripListener listener) {
+        listeners = Arrays.stream(listeners).filter(registered -> registered != listener).toArray(StripListener[]::new);
+    }
+
+    /**
+     * Gets if any listener is registered
+     * @return True if events are dispatched
+     */
+    public static boolean isEnabled() {
+        return listeners.length != 0;
+    }
+
+    /**
+     * Gets if any listener wants debug messages
+     * @return True if debug messages should be built
+     */
+    public static boolean isDebugEnabled() {
+        for (StripListener listener : listeners) {
+            if (listener.isDebugEnabled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reports the start of a phase
+     * @param phase The phase
+     * @return Start time to pass to {@link StripEvents#phaseEnd(StripPhase, long)}
+     */
+    public static long phaseStart(StripPhase phase) {
+        PhaseEvent.begin(phase);
+        StripListener[] current = listeners;
+        if (current.length == 0) {
+            return 0;
+        }
+        for (StripListener listener : current) {
+            listener.onPhaseStart(phase);
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Reports the end of a phase
+     * @param phase The phase
+     * @param start Value returned by {@link StripEvents#phaseStart(StripPhase)}
+     */
+    public static void phaseEnd(StripPhase phase, long start) {
+        PhaseEvent.end(phase);
+        StripListener[] current = listeners;
+        if (current.length == 0) {
+            return;
+        }
+        long duration = System.nanoTime() - start;
+        for (StripListener listener : current) {
+            listener.onPhaseEnd(phase, duration);
+        }
+    }
+
+    /**
+     * Adds to a counter
+     * @param counter The counter
+     * @param amount Amount to add
+     */
+    public static void count(StripCounter counter, long amount) {
+        if (amount == 0) {
+            return;
+        }
+        for (StripListener listener : listeners) {
+            listener.onCount(counter, amount);
+        }
+    }
+
+    /**
+     * Reports a failure that left a class or method unstripped, whether or not any listener is registered
+     * @param message The message
+     * @param error Cause of the failure, or null
+     */
+    public static void error(String message, @Nullable Throwable error) {
+        StripListener[] current = listeners;
+        if (current.length == 0) {
+            FALLBACK.onError(message, error);
+            return;
+        }
+        for (StripListener listener : current) {
+            listener.onError(message, error);
+        }
+        count(StripCounter.Failures, 1);
+    }
+
+    /**
+     * Sends a debug message to the listeners that want it
+     * @param message The message
+     */
+    public static void debug(String message) {
+        for (StripListener listener : listeners) {
+            if (listener.isDebugEnabled()) {
+                listener.onDebug(message);
+            }
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import com.github.tatercertified.asm_stripper.ASMStripper;
+import com.github.tatercertified.asm_stripper.api.StripType;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * On-disk record of the Strippable classes and Strips found in a jar.<p>
+ * The index is keyed by a hash of the jar contents and the ASM Stripper version,
+ * so a warm start can load only the indexed classes instead of scanning the whole jar.
+ * The references of the jar to the classes the Strips edit are stored as well,
+ * so the classes using a stripped class or member are found without scanning either
+ */
+public final class StripIndex {
+    /**
+     * Path of the index a build embeds in the jar, listing only the Strips left for runtime
+     */
+    public static final String EMBEDDED_PATH = "META-INF/asm_stripper/strip.idx";
+    /**
+     * Hash recorded in embedded indexes, which always describe the jar they are in
+     */
+    public static final String EMBEDDED_HASH = "embedded";
+    private static final String HEADER = "# ASM Stripper strip index";
+    // Indexes without this format were written before references were stored, so they are scanned again
+    private static final String FORMAT = "2";
+
+    private final String version;
+    private final String hash;
+    private final List<String> classNames;
+    private final List<Entry> strips;
+    private final List<ReferenceIndex.Reference> references;
+
+    private StripIndex(String version, String hash, List<String> classNames, List<Entry> strips, List<ReferenceIndex.Reference> references) {
+        this.version = version;
+        this.hash = hash;
+        this.classNames = classNames;
+        this.strips = strips;
+        this.references = references;
+    }
+
+    /**
+     * Builds an index from already collected Strips and references
+     * @param hash Content hash of the jar
+     * @param classNames Internal names of the indexed classes
+     * @param strips Strips in the indexed classes
+     * @param references Every reference of the jar to the {@link Entry#strippedOwners()} of the Strips
+     * @return StripIndex instance
+     */
+    public static StripIndex of(String hash, List<String> classNames, List<Entry> strips, List<ReferenceIndex.Reference> references) {
+        return new StripIndex(ASMStripper.VERSION, hash, classNames, strips, references);
+    }
+
+    /**
+     * Gets the classes whose members a set of Strips removes, which are the owners a {@link ReferenceIndex} needs
+     * @param strips Strips to get the owners of
+     * @return Internal names of the stripped owners
+     */
+    public static Set<String> strippedOwners(Collection<Entry> strips) {
+        Set<String> owners = new LinkedHashSet<>();
+        for (Entry strip : strips) {
+            owners.addAll(strip.strippedOwners());
+        }
+        return owners;
+    }
+
+    /**
+     * Collects the Strips declared in a class, before anything is stripped
+     * @param node ClassNode of a Strippable class
+     * @return Strips of the class and its members
+     */
+    public static List<Entry> entriesOf(ClassNode node) {
+        List<Entry> strips = new ArrayList<>();
+        AbstractNode classNode = AbstractNode.from(node);
+        if (classNode.shouldStrip()) {
+            strips.add(Entry.from(StripType.Class, node.name, classNode));
+        }
+        for (MethodNode method : node.methods) {
+            AbstractNode methodNode = AbstractNode.from(method, classNode);
+            if (methodNode.shouldStrip()) {
+                strips.add(Entry.from(StripType.Method, node.name, methodNode));
+            }
+        }
+        for (FieldNode field : node.fields) {
+            AbstractNode fieldNode = AbstractNode.from(field, classNode);
+            if (fieldNode.shouldStrip()) {
+                strips.add(Entry.from(StripType.Field, node.name, fieldNode));
+            }
+        }
+        return strips;
+    }
+
+    /**
+     * Reads an index from disk
+     * @param path Path of the index file
+     * @return StripIndex instance, or null if the file is missing or malformed
+     * @throws IOException Failed to read an existing file
+     */
+    @Nullable
+    public static StripIndex read(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return read(reader);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the index embedded in a jar by a build
+     * @param jar Reader of the jar
+     * @return StripIndex instance, or null if the jar has none, or it is malformed or from another ASM Stripper version
+     * @throws IOException Failed to read the embedded index
+     */
+    @Nullable
+    public static StripIndex readEmbedded(MappedJarReader jar) throws IOException {
+        MappedJarReader.Entry entry = jar.getEntry(EMBEDDED_PATH);
+        if (entry == null) {
+            return null;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(jar.read(entry)), StandardCharsets.UTF_8))) {
+            StripIndex index = read(reader);
+            return index != null && index.matches(EMBEDDED_HASH) ? index : null;
+        }
+    }
+
+    @Nullable
+    private static StripIndex read(BufferedReader reader) throws IOException {
+        String format = null;
+        String version = null;
+        String hash = null;
+        List<String> classNames = new ArrayList<>();
+        List<Entry> strips = new ArrayList<>();
+        List<ReferenceIndex.Reference> references = new ArrayList<>();
+
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t", -1);
+                switch (parts[0]) {
+                    case "format" -> format = parts[1];
+                    case "version" -> version = parts[1];
+                    case "hash" -> hash = parts[1];
+                    case "class" -> classNames.add(parts[1]);
+                    case "strip" -> strips.add(Entry.parse(parts));
+                    case "ref" -> parseReferences(parts, references);
+                    default -> {
+                        return null;
+                    }
+                }
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return null;
+        }
+
+        if (!FORMAT.equals(format) || version == null || hash == null) {
+            return null;
+        }
+        return new StripIndex(version, hash, classNames, strips, references);
+    }
+
+    private static void parseReferences(String[] parts, List<ReferenceIndex.Reference> references) {
+        ReferenceIndex.Member member = new ReferenceIndex.Member(parts[2], parts[3]);
+        for (String className : parts[4].split(",")) {
+            references.add(new ReferenceIndex.Reference(parts[1], member, className));
+        }
+    }
+
+    /**
+     * Writes the index to disk, replacing any existing index
+     * @param path Path of the index file
+     * @throws IOException Failed to write the file
+     */
+    public void write(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            this.write(out);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the index to a stream, leaving the stream open
+     * @param out Stream to write to
+     * @throws IOException Failed to write to the stream
+     */
+    public void write(OutputStream out) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(HEADER);
+        writer.newLine();
+        writer.write("format\t" + FORMAT);
+        writer.newLine();
+        writer.write("version\t" + this.version);
+        writer.newLine();
+        writer.write("hash\t" + this.hash);
+        writer.newLine();
+        for (String className : this.classNames) {
+            writer.write("class\t" + className);
+            writer.newLine();
+        }
+        for (Entry strip : this.strips) {
+            writer.write(strip.format());
+            writer.newLine();
+        }
+        // One line per member, listing every class referencing it
+        ReferenceIndex grouped = this.getReferences();
+        for (String owner : this.strippedOwners()) {
+            for (Map.Entry<ReferenceIndex.Member, Set<String>> member : grouped.getReferences(owner).entrySet()) {
+                writer.write(String.join("\t", "ref", owner, member.getKey().name(), member.getKey().desc(), String.join(",", member.getValue())));
+                writer.newLine();
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Checks if the index is still valid for a jar
+     * @param hash Content hash of the jar
+     * @return True if the hash and the ASM Stripper version both match
+     */
+    public boolean matches(String hash) {
+        return this.hash.equals(hash) && this.version.equals(ASMStripper.VERSION);
+    }
+
+    /**
+     * Gets the internal names of all Strippable classes
+     * @return List of internal class names
+     */
+    public List<String> getClassNames() {
+        return this.classNames;
+    }
+
+    /**
+     * Gets all Strips in the indexed jar
+     * @return List of Strip entries
+     */
+    public List<Entry> getStrips() {
+        return this.strips;
+    }
+
+    /**
+     * Gets the classes whose members the indexed Strips remove
+     * @return Internal names of the stripped owners
+     */
+    public Set<String> strippedOwners() {
+        return strippedOwners(this.strips);
+    }
+
+    /**
+     * Gets the stored references of the jar to the {@link #strippedOwners()}
+     * @return ReferenceIndex covering the stripped owners
+     */
+    public ReferenceIndex getReferences() {
+        ReferenceIndex index = new ReferenceIndex(this.strippedOwners());
+        index.add(this.references);
+        return index;
+    }
+
+    /**
+     * Hashes a jar by the name, CRC, and size of every class entry.<p>
+     * The CRCs come from the central directory, so no entry has to be inflated
+     * @param entries Class entries of the jar
+     * @return Hex encoded hash
+     */
+    public static String hash(List<MappedJarReader.Entry> entries) {
+        MessageDigest digest = sha256();
+        for (MappedJarReader.Entry entry : entries) {
+            digest.update(entry.name().getBytes(StandardCharsets.UTF_8));
+            digest.update(longBytes(entry.crc()));
+            digest.update(longBytes(entry.size()));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hashes a class directory by the contents of every class file
+     * @param root Root of the class directory
+     * @param paths Class files in the directory
+     * @return Hex encoded hash
+     * @throws IOException Failed to read a class file
+     */
+    public static String hash(Path root, List<Path> paths) throws IOException {
+        MessageDigest digest = sha256();
+        Path[] sorted = paths.toArray(Path[]::new);
+        Arrays.sort(sorted);
+        for (Path path : sorted) {
+            digest.update(root.relativize(path).toString().getBytes(StandardCharsets.UTF_8));
+            digest.update(Files.readAllBytes(path));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] longBytes(long value) {
+        byte[] bytes = new byte[8];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (value >>> (i * 8));
+        }
+        return bytes;
+    }
+
+    /**
+     * A single Strip recorded in the index
+     * @param type The type of Strip
+     * @param owner Internal name of the class declaring the Strip
+     * @param name Name of the stripped class, method, or field
+     * @param desc Descriptor of the stripped method or field, null for classes
+     * @param altClassPath Alternative class path set on the Strip annotation, or null
+     * @param mixinTargets Class names of the Mixin targets, empty unless the Strip is aimed at them
+     */
+    public record Entry(StripType type, String owner, String name, @Nullable String desc, @Nullable String altClassPath, List<String> mixinTargets) {
+        private static Entry from(StripType type, String owner, AbstractNode node) {
+            AnnotationNode strip = node.getAnnotation(KnownAnnotation.STRIP);
+            String altClassPath = strip != null ? (String) node.getAnnotationValue(strip, "altClassPath") : null;
+            // Only Mixin classes and Shadowed members are aimed at the Mixin targets, other Mixin members strip the Mixin itself
+            List<String> targets = type == StripType.Class || node.isShadowed() ? node.getMixinTargets() : null;
+            return new Entry(type, owner, node.getName(), node.getDescription(), altClassPath, targets != null ? targets : List.of());
+        }
+
+        /**
+         * Gets the classes this Strip edits, which are the Mixin targets, the altClassPath, or the owner
+         * @return Internal names of the target classes
+         */
+        public List<String> targetNames() {
+            if (!this.mixinTargets.isEmpty()) {
+                return this.mixinTargets.stream().map(target -> target.replace('.', '/')).toList();
+            }
+            return List.of(this.altClassPath != null ? this.altClassPath.replace('.', '/') : this.owner);
+        }
+
+        /**
+         * Gets the classes whose members this Strip removes, which are the targets and, for Mixin Strips, the Mixin itself
+         * @return Internal names of the stripped owners
+         */
+        public List<String> strippedOwners() {
+            if (this.mixinTargets.isEmpty()) {
+                return this.targetNames();
+            }
+            List<String> owners = new ArrayList<>(this.targetNames());
+            owners.add(this.owner);
+            return owners;
+        }
+
+        private static Entry parse(String[] parts) {
+            return new Entry(
+                    StripType.valueOf(parts[1]),
+                    parts[2],
+                    parts[3],
+                    parts[4].isEmpty() ? null : parts[4],
+                    parts[5].isEmpty() ? null : parts[5],
+                    parts[6].isEmpty() ? List.of() : List.of(parts[6].split(","))
+            );
+        }
+
+        private String format() {
+            return String.join("\t",
+                    "strip",
+                    this.type.name(),
+                    this.owner,
+                    this.name,
+                    this.desc != null ? this.desc : "",
+                    this.altClassPath != null ? this.altClassPath : "",
+                    String.join(",", this.mixinTargets)
+            );
+        }
+    }
+}
@@ -0,0 +1,599 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import com.github.tatercertified.asm_stripper.api.StripCounter;
+import com.github.tatercertified.asm_stripper.api.StripMode;
+import com.github.tatercertified.asm_stripper.api.StripType;
+import com.github.tatercertified.asm_stripper.backend.jfr.TargetEvent;
+import com.github.tatercertified.asm_stripper.backend.stripper.ClassStripper;
+import com.github.tatercertified.asm_stripper.backend.stripper.FieldStripper;
+import com.github.tatercertified.asm_stripper.backend.stripper.MethodStripper;
+import com.github.tatercertified.asm_stripper.backend.stripper.StripClassVisitor;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects every Strip before anything is edited, grouped by the class that has to be edited.<p>
+ * Applying the plan walks the instructions of each target class once,
+ * matching every instruction against all Strips aimed at that class
+ */
+public final class StripPlan {
+    private final Map<String, Target> targets = new LinkedHashMap<>();
+    private final TargetCache cache;
+    private final boolean lazy;
+
+    /**
+     * Creates a plan resolving targets through the Mixin bytecode provider
+     */
+    public StripPlan() {
+        this(new TargetCache(TargetCache.DEFAULT_SIZE));
+    }
+
+    /**
+     * Creates a plan resolving targets through a shared cache
+     * @param cache TargetCache for this run
+     */
+    public StripPlan(TargetCache cache) {
+        this(cache, false);
+    }
+
+    /**
+     * Creates a plan resolving targets through a shared cache
+     * @param cache TargetCache for this run
+     * @param lazy If Mixin targets are registered by name, to be applied through {@link LazyStrips}
+     */
+    public StripPlan(TargetCache cache, boolean lazy) {
+        this.cache = cache;
+        this.lazy = lazy;
+    }
+
+    /**
+     * Gets if Mixin targets are left for {@link LazyStrips} instead of being resolved
+     * @return True if the plan is lazy
+     */
+    public boolean isLazy() {
+        return this.lazy;
+    }
+
+    /**
+     * Resolves a target class through this run's {@link TargetCache}
+     * @param name Class name, either dotted or internal
+     * @return ClassNode of the target
+     * @throws ClassNotFoundException The class does not exist
+     * @throws IOException Failed to read the class
+     */
+    public ClassNode resolve(String name) throws ClassNotFoundException, IOException {
+        return this.cache.resolve(name);
+    }
+
+    /**
+     * Gets the TargetCache used by this plan
+     * @return TargetCache instance
+     */
+    public TargetCache getCache() {
+        return this.cache;
+    }
+
+    /**
+     * Gets the plan for a target class, creating it if needed.<p>
+     * Targets are grouped by internal name, so the first ClassNode registered for a name is the one edited
+     * @param node Target ClassNode
+     * @return Target plan
+     */
+    public Target target(ClassNode node) {
+        Target target = this.targets.computeIfAbsent(node.name, Target::new);
+        if (target.node == null) {
+            target.node = node;
+        }
+        return target;
+    }
+
+    /**
+     * Gets the plan for a target class by name, creating it without a ClassNode if needed.<p>
+     * Such a target is applied later with {@link Target#apply(ClassNode)}, once its class is read
+     * @param internalName Internal name of the target class
+     * @return Target plan
+     */
+    public Target target(String internalName) {
+        return this.targets.computeIfAbsent(internalName, Target::new);
+    }
+
+    /**
+     * Gets the plan for a target class if any Strip is aimed at it
+     * @param internalName Internal name of the target class
+     * @return Target plan, or null if the class is not a target
+     */
+    @Nullable
+    public Target getTarget(String internalName) {
+        return this.targets.get(internalName);
+    }
+
+    /**
+     * Gets all target plans in registration order
+     * @return Collection of target plans
+     */
+    public Collection<Target> getTargets() {
+        return this.targets.values();
+    }
+
+    /**
+     * Adds a Strip read from a {@link StripIndex}, registering its targets by name.<p>
+     * The declaration of a stripped method or field is removed from its owner as well
+     * @param strip Strip entry
+     */
+    public void add(StripIndex.Entry strip) {
+        this.add(strip, null);
+    }
+
+    /**
+     * Adds a Strip read from a {@link StripIndex}, registering its targets by name.<p>
+     * With a {@link ReferenceIndex}, every indexed class using the stripped class or member is a target as well
+     * @param strip Strip entry
+     * @param references Index of the references to the Strip's targets, or null to only edit the targets
+     */
+    public void add(StripIndex.Entry strip, @Nullable ReferenceIndex references) {
+        boolean mixin = !strip.mixinTargets().isEmpty();
+        for (String targetName : strip.targetNames()) {
+            if (references != null) {
+                this.addReferences(strip, targetName, references);
+            }
+            Target target = this.target(targetName);
+            if (mixin) {
+                target.markMixinTarget();
+            }
+            switch (strip.type()) {
+                case Class -> {
+                    target.stripType(targetName);
+                    if (mixin) {
+                        this.target(strip.owner()).stripType(targetName);
+                    }
+                }
+                case Method -> {
+                    target.stripMethod(new Key(targetName, strip.name(), strip.desc()));
+                    if (mixin) {
+                        this.target(strip.owner()).stripMethod(new Key(strip.owner(), strip.name(), strip.desc()));
+                    }
+                }
+                case Field -> {
+                    target.stripField(new Key(targetName, strip.name(), strip.desc()));
+                    if (mixin) {
+                        this.target(strip.owner()).stripField(new Key(strip.owner(), strip.name(), strip.desc()));
+                    }
+                }
+            }
+        }
+        if (strip.type() != StripType.Class) {
+            this.target(strip.owner()).removeDeclaration(new Key(strip.owner(), strip.name(), strip.desc()));
+        }
+    }
+
+    private void addReferences(StripIndex.Entry strip, String targetName, ReferenceIndex references) {
+        switch (strip.type()) {
+            case Class -> {
+                for (String className : references.getReferencingClasses(targetName)) {
+                    this.target(className).stripType(targetName);
+                }
+            }
+            case Method -> {
+                Key key = new Key(targetName, strip.name(), strip.desc());
+                for (String className : references.getReferencingClasses(targetName, strip.name(), strip.desc())) {
+                    this.target(className).stripMethod(key);
+                }
+            }
+            case Field -> {
+                Key key = new Key(targetName, strip.name(), strip.desc());
+                for (String className : references.getReferencingClasses(targetName, strip.name(), strip.desc())) {
+                    this.target(className).stripField(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets every class owning something this plan strips, to build a {@link ReferenceIndex} for {@link #addReferences}
+     * @return Internal names of the stripped classes and of the owners of the stripped methods and fields
+     */
+    public Set<String> getStrippedOwners() {
+        Set<String> owners = new HashSet<>();
+        for (Target target : this.targets.values()) {
+            owners.addAll(target.types);
+            for (Key key : target.methods) {
+                owners.add(key.owner());
+            }
+            for (Key key : target.fields) {
+                owners.add(key.owner());
+            }
+        }
+        return owners;
+    }
+
+    /**
+     * Makes every indexed class using a class or member stripped by this plan a target as well.<p>
+     * Classes that are already targets get the Strips added, and the others are resolved through the plan's {@link TargetCache}.
+     * These classes are not transformed by a Mixin, so they are stripped eagerly even if the plan is lazy
+     * @param references Index of the references to {@link #getStrippedOwners()}
+     */
+    public void addReferences(ReferenceIndex references) {
+        // The Strips are copied first, as resolving a referencing class adds a target
+        Set<String> types = new LinkedHashSet<>();
+        Set<Key> methods = new LinkedHashSet<>();
+        Set<Key> fields = new LinkedHashSet<>();
+        for (Target target : this.targets.values()) {
+            types.addAll(target.types);
+            methods.addAll(target.methods);
+            fields.addAll(target.fields);
+        }
+
+        for (String type : types) {
+            for (String className : references.getReferencingClasses(type)) {
+                this.referencing(className).stripType(type);
+            }
+        }
+        for (Key key : methods) {
+            for (String className : references.getReferencingClasses(key.owner(), key.name(), key.desc())) {
+                this.referencing(className).stripMethod(key);
+            }
+        }
+        for (Key key : fields) {
+            for (String className : references.getReferencingClasses(key.owner(), key.name(), key.desc())) {
+                this.referencing(className).stripField(key);
+            }
+        }
+    }
+
+    private Target referencing(String className) {
+        Target target = this.targets.get(className);
+        if (target != null) {
+            return target;
+        }
+        try {
+            return this.target(this.resolve(className));
+        } catch (ClassNotFoundException | IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Applies every planned Strip, one instruction walk per target class.<p>
+     * Targets registered only by name are skipped
+     */
+    public void apply() {
+        for (Target target : this.targets.values()) {
+            if (target.node != null) {
+                target.apply(target.node);
+            }
+        }
+    }
+
+    /**
+     * Identifies a method or field by its owner, name, and descriptor
+     * @param owner Internal name of the owning class
+     * @param name Member name
+     * @param desc Member descriptor
+     */
+    public record Key(String owner, String name, String desc) {
+    }
+
+    /**
+     * All Strips aimed at a single class
+     */
+    public static final class Target {
+        private final String name;
+        @Nullable
+        private ClassNode node;
+        private final Set<String> types = new HashSet<>();
+        private final Set<Key> methods = new HashSet<>();
+        private final Set<Key> fields = new HashSet<>();
+        private final Set<Key> declarations = new HashSet<>();
+        private boolean mixinTarget;
+
+        private Target(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Gets the internal name of the target class
+         * @return Internal class name
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Gets the ClassNode that will be edited
+         * @return Target ClassNode, or null if the target was registered by name
+         */
+        @Nullable
+        public ClassNode getNode() {
+            return this.node;
+        }
+
+        /**
+         * Marks this target as the target of a Mixin, which Mixin edits after the plan is applied
+         */
+        public void markMixinTarget() {
+            this.mixinTarget = true;
+        }
+
+        /**
+         * Gets if this target is the target of a Mixin
+         * @return True if a Mixin targets this class
+         */
+        public boolean isMixinTarget() {
+            return this.mixinTarget;
+        }
+
+        /**
+         * Removes all usages of a class from this target
+         * @param internalName Internal name of the stripped class
+         */
+        public void stripType(String internalName) {
+            this.types.add(internalName);
+        }
+
+        /**
+         * Removes all calls to a method from this target
+         * @param key Key of the stripped method
+         */
+        public void stripMethod(Key key) {
+            this.methods.add(key);
+        }
+
+        /**
+         * Removes the static initializer and static usages of a field from this target
+         * @param key Key of the stripped field
+         */
+        public void stripField(Key key) {
+            this.fields.add(key);
+        }
+
+        /**
+         * Removes the declaration of a method or field from this target
+         * @param key Key of the stripped member, owned by this target
+         */
+        public void removeDeclaration(Key key) {
+            this.declarations.add(key);
+        }
+
+        /**
+         * Gets the internal names of the classes whose usages are removed
+         * @return Unmodifiable set of internal class names
+         */
+        public Set<String> getTypes() {
+            return Collections.unmodifiableSet(this.types);
+        }
+
+        /**
+         * Gets the methods whose calls are removed
+         * @return Unmodifiable set of method Keys
+         */
+        public Set<Key> getMethods() {
+            return Collections.unmodifiableSet(this.methods);
+        }
+
+        /**
+         * Gets the fields whose static initializers and static usages are removed
+         * @return Unmodifiable set of field Keys
+         */
+        public Set<Key> getFields() {
+            return Collections.unmodifiableSet(this.fields);
+        }
+
+        /**
+         * Gets the methods and fields whose declarations are removed
+         * @return Unmodifiable set of member Keys
+         */
+        public Set<Key> getDeclarations() {
+            return Collections.unmodifiableSet(this.declarations);
+        }
+
+        /**
+         * Applies the Strips of this target to the bytes of the target class, streaming them through a {@link StripClassVisitor}.<p>
+         * This is the {@link StripMode#Visitor} version of {@link #apply(ClassNode)}, no ClassNode is built.
+         * The writer does not share the reader's constant pool, so constants only the stripped code used are not written.
+         * Classes that cannot {@link #mayMatch match} are returned as they are
+         * @param classBytes Bytes of the target class
+         * @return Bytes of the stripped class
+         */
+        public byte[] apply(byte[] classBytes) {
+            ClassReader reader = new ClassReader(classBytes);
+            if (!this.mayMatch(reader)) {
+                return classBytes;
+            }
+            TargetEvent event = new TargetEvent();
+            event.begin();
+            // Every method goes through a StripMethodVisitor, so sharing the pool would not let any method be copied as it is
+            ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            StripClassVisitor visitor = new StripClassVisitor(writer, this);
+            reader.accept(visitor, 0);
+            byte[] stripped = writer.toByteArray();
+            if (event.shouldCommit()) {
+                this.fill(event, StripMode.Visitor, visitor.getRemoved());
+                event.bytesIn = classBytes.length;
+                event.bytesOut = stripped.length;
+                event.commit();
+            }
+            return stripped;
+        }
+
+        /**
+         * Checks the constant pool of the target class for anything this target strips, without reading the rest of the class.<p>
+         * Declarations are always removed, so a target removing any cannot be skipped
+         * @param reader ClassReader of the target class
+         * @return False if applying this target would not change the class
+         */
+        public boolean mayMatch(ClassReader reader) {
+            return !this.declarations.isEmpty()
+                    || ConstantPool.namesAnyClass(reader, this.owners(reader.getClassName()))
+                    || ConstantPool.mentionsAnyType(reader, this.types);
+        }
+
+        /**
+         * Gets every class whose instructions may be matched by this target
+         * @param className Internal name of the target class, whose own fields are removed if their type is stripped
+         * @return Internal names of the owners of the stripped classes and members
+         */
+        private Set<String> owners(String className) {
+            Set<String> owners = new HashSet<>(this.types);
+            for (Key key : this.methods) {
+                owners.add(key.owner());
+            }
+            for (Key key : this.fields) {
+                owners.add(key.owner());
+            }
+            if (!this.types.isEmpty()) {
+                owners.add(className);
+            }
+            return owners;
+        }
+
+        /**
+         * Checks if any instruction of a method uses one of the owners, before anything is matched against the Strips
+         * @param method MethodNode to check
+         * @param owners Value of {@link #owners}
+         * @return False if no instruction of the method can match
+         */
+        private static boolean mayMatch(MethodNode method, Set<String> owners) {
+            for (AbstractInsnNode insn : method.instructions) {
+                boolean match = switch (insn) {
+                    case TypeInsnNode typeInsn -> owners.contains(typeInsn.desc);
+                    case MethodInsnNode methodInsn -> owners.contains(methodInsn.owner);
+                    case FieldInsnNode fieldInsn -> owners.contains(fieldInsn.owner);
+                    default -> false;
+                };
+                if (match) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Applies the Strips of this target to a ClassNode of the target class.<p>
+         * The debug info and InnerClasses entries left behind by removed code are pruned with {@link ClassCompactor}
+         * @param node ClassNode to edit
+         * @return Number of instructions removed
+         */
+        public int apply(ClassNode node) {
+            return this.apply(node, null);
+        }
+
+        /**
+         * Applies the Strips of this target to a ClassNode of the target class, collecting the methods whose instructions changed.<p>
+         * Only those methods need their frames recomputed, see {@link FrameWriter}
+         * @param node ClassNode to edit
+         * @param edited Receives the edited methods, or null if they are not needed
+         * @return Number of instructions removed
+         */
+        public int apply(ClassNode node, @Nullable Set<MethodNode> edited) {
+            TargetEvent event = new TargetEvent();
+            event.begin();
+            if (StripEvents.isDebugEnabled()) {
+                StripEvents.debug("Applying " + (this.types.size() + this.methods.size() + this.fields.size()) + " Strips to " + node.name);
+            }
+
+            if (!this.declarations.isEmpty()) {
+                node.methods.removeIf(method -> this.declarations.contains(new Key(node.name, method.name, method.desc)));
+                node.fields.removeIf(field -> this.declarations.contains(new Key(node.name, field.name, field.desc)));
+            }
+            if (!this.types.isEmpty()) {
+                ClassStripper.removeFields(node, this.types);
+            }
+
+            // Most methods use none of the owners, so they are rejected without matching any instruction against the Strips
+            Set<String> owners = this.owners(node.name);
+            int removed = 0;
+            int compacted = 0;
+            for (MethodNode method : node.methods) {
+                MethodEditor editor = mayMatch(method, owners) ? this.collect(node, method) : null;
+                if (editor != null && editor.hasEdits()) {
+                    removed += editor.apply();
+                    compacted += ClassCompactor.compact(method);
+                    if (edited != null) {
+                        edited.add(method);
+                    }
+                }
+
+                // Only the class declaring a stripped field loses its initializer
+                if (method.name.equals("<clinit>") && this.stripsFieldOf(node.name) && FieldStripper.ensureReturn(method)) {
+                    if (edited != null) {
+                        edited.add(method);
+                    }
+                }
+            }
+            if (removed != 0 || !this.declarations.isEmpty() || !this.types.isEmpty()) {
+                compacted += ClassCompactor.compactInnerClasses(node);
+            }
+            StripEvents.count(StripCounter.InstructionsRemoved, removed);
+            StripEvents.count(StripCounter.DebugEntriesRemoved, compacted);
+            if (event.shouldCommit()) {
+                this.fill(event, StripMode.Tree, removed);
+                event.commit();
+            }
+            return removed;
+        }
+
+        /**
+         * Matches every instruction of a method against the Strips of this target
+         * @param node ClassNode declaring the method
+         * @param method MethodNode to match
+         * @return Editor holding the collected edits
+         */
+        private MethodEditor collect(ClassNode node, MethodNode method) {
+            MethodEditor editor = new MethodEditor(node.name, method);
+            for (AbstractInsnNode insn : method.instructions) {
+                switch (insn) {
+                    case TypeInsnNode typeInsn when this.types.contains(typeInsn.desc) ->
+                            ClassStripper.collectTypeUsage(editor, typeInsn);
+                    case MethodInsnNode methodInsn when this.types.contains(methodInsn.owner) ->
+                            ClassStripper.collectTypeUsage(editor, methodInsn);
+                    case MethodInsnNode methodInsn when this.methods.contains(new Key(methodInsn.owner, methodInsn.name, methodInsn.desc)) ->
+                            MethodStripper.collectCallSite(editor, methodInsn);
+                    case FieldInsnNode fieldInsn when this.types.contains(fieldInsn.owner) ->
+                            ClassStripper.collectTypeUsage(editor, fieldInsn);
+                    // Fields of a stripped type were removed from this class above
+                    case FieldInsnNode fieldInsn when fieldInsn.owner.equals(node.name) && ClassStripper.isStrippedField(fieldInsn.desc, this.types) ->
+                            ClassStripper.collectTypeUsage(editor, fieldInsn);
+                    case FieldInsnNode fieldInsn when this.fields.contains(new Key(fieldInsn.owner, fieldInsn.name, fieldInsn.desc)) ->
+                            FieldStripper.collectFieldSite(editor, fieldInsn);
+                    default -> {
+                    }
+                }
+            }
+            return editor;
+        }
+
+        private boolean stripsFieldOf(String owner) {
+            for (Key key : this.fields) {
+                if (key.owner().equals(owner)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void fill(TargetEvent event, StripMode mode, int removed) {
+            event.targetClass = this.name;
+            event.mode = mode.name();
+            event.types = this.types.size();
+            event.methods = this.methods.size();
+            event.fields = this.fields.size();
+            event.instructionsRemoved = removed;
+        }
+    }
+}
@@ -1,98 +1,188 @@
 package com.github.tatercertified.asm_stripper.backend.util;
 
-import com.github.tatercertified.asm_stripper.ASMStripper;
+import com.github.tatercertified.asm_stripper.api.StripCounter;
+import com.github.tatercertified.asm_stripper.api.StripPhase;
 import com.github.tatercertified.asm_stripper.api.StripType;
 import com.github.tatercertified.asm_stripper.api.StripperPlugin;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Set;
 
 public final class StripProcessor {
     /**
-     * Processes the Strip Annotations
+     * Processes the Strip Annotations.<p>
+     * All Strips are collected into a {@link StripPlan} first, then applied with one walk per target class.
+     * Every class of the jar using a stripped class or member is found through a {@link ReferenceIndex} and edited as well.
+     * The index is collected by the scan, or replayed from a {@link StripIndex}, so the jar is not read again.
+     * If the plugin is {@link StripperPlugin#lazy()}, Mixin targets are handed to {@link LazyStrips} instead.
+     * If the plugin uses {@link StripperPlugin#streamScan()}, classes are checked while the jar is scanned,
+     * so only the classes held by the plan stay in memory until the Strips are applied
      * @param plugin StripperPlugin instance
      */
     public static void processStrips(StripperPlugin plugin) {
-        // Init
-        List<ClassNode> allNodes = plugin.init();
+        StripPlan plan = new StripPlan(new TargetCache(plugin.targetCacheSize()), plugin.lazy());
+        List<PlannedStrip> planned = new ArrayList<>();
+        long start;
 
-        // Preload
-        if (ASMStripper.VERBOSE) {
-            System.out.println("Stripper Preload");
-        }
-        plugin.preLoad();
-
-        // Check classes
-        ListIterator<ClassNode> classNodes = allNodes.listIterator();
-        while (classNodes.hasNext()) {
-            ClassNode node = classNodes.next();
-            AbstractNode abstractNode = AbstractNode.from(node);
-            if (ASMStripper.VERBOSE) {
-                System.out.println("Checking " + abstractNode.getName());
-            }
-            if (abstractNode.isStrippable()) {
-                if (ASMStripper.VERBOSE) {
-                    System.out.println(abstractNode.getName() + " is Strippable");
+        if (plugin.streamScan()) {
+            // Preload
+            start = StripEvents.phaseStart(StripPhase.PreLoad);
+            plugin.preLoad();
+            StripEvents.phaseEnd(StripPhase.PreLoad, start);
+
+            // Init lasts until the first class is read, as opening the jar or its index is all that happens before
+            long initStart = StripEvents.phaseStart(StripPhase.Init);
+            long[] scanStart = new long[1];
+            boolean[] scanning = new boolean[1];
+            // Each class is checked as soon as it is read, so only the nodes the plan registered stay reachable
+            plugin.init(node -> {
+                if (!scanning[0]) {
+                    scanning[0] = true;
+                    StripEvents.phaseEnd(StripPhase.Init, initStart);
+                    scanStart[0] = StripEvents.phaseStart(StripPhase.Scan);
                 }
-                if (plugin.shouldStrip(abstractNode)) {
-                    if (ASMStripper.VERBOSE) {
-                        System.out.println(abstractNode.getName() + " is Stripping");
-                    }
-                    plugin.preStrip(abstractNode, StripType.Class);
-                    abstractNode.strip();
-                    plugin.postStrip(abstractNode, StripType.Class);
+                check(plugin, plan, planned, node);
+            });
+            if (!scanning[0]) {
+                StripEvents.phaseEnd(StripPhase.Init, initStart);
+                scanStart[0] = StripEvents.phaseStart(StripPhase.Scan);
+            }
+            start = scanStart[0];
+        } else {
+            // Init
+            start = StripEvents.phaseStart(StripPhase.Init);
+            List<ClassNode> allNodes = plugin.init();
+            StripEvents.phaseEnd(StripPhase.Init, start);
+
+            // Preload
+            start = StripEvents.phaseStart(StripPhase.PreLoad);
+            plugin.preLoad();
+            StripEvents.phaseEnd(StripPhase.PreLoad, start);
+
+            // Check classes
+            start = StripEvents.phaseStart(StripPhase.Scan);
+            ListIterator<ClassNode> classNodes = allNodes.listIterator();
+            while (classNodes.hasNext()) {
+                if (check(plugin, plan, planned, classNodes.next())) {
                     classNodes.remove();
-                    // Skip all the other stuff in the class
-                    continue;
                 }
             }
+        }
 
-            // Check Methods
-            ListIterator<MethodNode> methodNodes = node.methods.listIterator();
-            while (methodNodes.hasNext()) {
-                MethodNode methodNode = methodNodes.next();
-                AbstractNode abstractMethodNode = AbstractNode.from(methodNode, node);
-                if (ASMStripper.VERBOSE) {
-                    System.out.println("Checking " + abstractMethodNode.getName());
-                }
-                if (plugin.shouldStrip(abstractMethodNode)) {
-                    if (ASMStripper.VERBOSE) {
-                        System.out.println(abstractMethodNode.getName() + " is Stripping");
-                    }
-                    plugin.preStrip(abstractMethodNode, StripType.Method);
-                    abstractMethodNode.strip();
-                    plugin.postStrip(abstractMethodNode, StripType.Method);
-                    methodNodes.remove();
-                }
+        // Every other class of the jar using something stripped is edited as well, found through the references the scan collected
+        Set<String> owners = plan.getStrippedOwners();
+        if (!owners.isEmpty()) {
+            try {
+                plan.addReferences(JarUtils.getReferences(owners, plugin.parallelScan()));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
             }
+        }
+
+        StripEvents.count(StripCounter.MembersMatched, planned.size());
+        StripEvents.phaseEnd(StripPhase.Scan, start);
+
+        // Strip
+        start = StripEvents.phaseStart(StripPhase.Strip);
+        // Live members have to be recorded before anything is stripped
+        TreeShaker shaker = plugin.treeShake() ? new TreeShaker(plan) : null;
+        plan.apply();
+        if (plan.isLazy()) {
+            LazyStrips.register(plan);
+        }
+        for (PlannedStrip strip : planned) {
+            plugin.postStrip(strip.node(), strip.type());
+        }
+        StripEvents.phaseEnd(StripPhase.Strip, start);
+
+        // Shake
+        if (shaker != null) {
+            start = StripEvents.phaseStart(StripPhase.Shake);
+            shaker.shake();
+            StripEvents.phaseEnd(StripPhase.Shake, start);
+        }
+
+        // On Finish
+        start = StripEvents.phaseStart(StripPhase.Finish);
+        plugin.onFinish();
+        StripEvents.phaseEnd(StripPhase.Finish, start);
+    }
 
-            // Check Fields
-            ListIterator<FieldNode> fieldNodes = node.fields.listIterator();
-            while (fieldNodes.hasNext()) {
-                FieldNode fieldNode = fieldNodes.next();
-                AbstractNode abstractFieldNode = AbstractNode.from(fieldNode, node);
-                if (ASMStripper.VERBOSE) {
-                    System.out.println("Checking " + abstractFieldNode.getName());
+    /**
+     * Checks a class and its members, adding the Strips the plugin wants to the plan
+     * @param plugin StripperPlugin instance
+     * @param plan StripPlan to add to
+     * @param planned Receives the planned Strips, for {@link StripperPlugin#postStrip}
+     * @param node ClassNode of a Strippable class
+     * @return True if the whole class is stripped
+     */
+    private static boolean check(StripperPlugin plugin, StripPlan plan, List<PlannedStrip> planned, ClassNode node) {
+        AbstractNode abstractNode = AbstractNode.from(node);
+        if (StripEvents.isDebugEnabled()) {
+            StripEvents.debug("Checking " + abstractNode.getName());
+        }
+        if (abstractNode.isStrippable()) {
+            if (StripEvents.isDebugEnabled()) {
+                StripEvents.debug(abstractNode.getName() + " is Strippable");
+            }
+            if (plugin.shouldStrip(abstractNode)) {
+                if (StripEvents.isDebugEnabled()) {
+                    StripEvents.debug(abstractNode.getName() + " is Stripping");
                 }
-                if (plugin.shouldStrip(abstractFieldNode)) {
-                    if (ASMStripper.VERBOSE) {
-                        System.out.println(abstractFieldNode.getName() + " is Stripping");
-                    }
-                    plugin.preStrip(abstractFieldNode, StripType.Field);
-                    abstractFieldNode.strip();
-                    plugin.postStrip(abstractFieldNode, StripType.Field);
-                    fieldNodes.remove();
+                plugin.preStrip(abstractNode, StripType.Class);
+                abstractNode.plan(plan);
+                planned.add(new PlannedStrip(abstractNode, StripType.Class));
+                // Skip all the other stuff in the class
+                return true;
+            }
+        }
+
+        // Check Methods
+        ListIterator<MethodNode> methodNodes = node.methods.listIterator();
+        while (methodNodes.hasNext()) {
+            MethodNode methodNode = methodNodes.next();
+            AbstractNode abstractMethodNode = AbstractNode.from(methodNode, abstractNode);
+            if (StripEvents.isDebugEnabled()) {
+                StripEvents.debug("Checking " + abstractMethodNode.getName());
+            }
+            if (plugin.shouldStrip(abstractMethodNode)) {
+                if (StripEvents.isDebugEnabled()) {
+                    StripEvents.debug(abstractMethodNode.getName() + " is Stripping");
                 }
+                plugin.preStrip(abstractMethodNode, StripType.Method);
+                abstractMethodNode.plan(plan);
+                planned.add(new PlannedStrip(abstractMethodNode, StripType.Method));
+                methodNodes.remove();
             }
         }
 
-        // On Finish
-        if (ASMStripper.VERBOSE) {
-            System.out.println("Stripper OnFinish");
+        // Check Fields
+        ListIterator<FieldNode> fieldNodes = node.fields.listIterator();
+        while (fieldNodes.hasNext()) {
+            FieldNode fieldNode = fieldNodes.next();
+            AbstractNode abstractFieldNode = AbstractNode.from(fieldNode, abstractNode);
+            if (StripEvents.isDebugEnabled()) {
+                StripEvents.debug("Checking " + abstractFieldNode.getName());
+            }
+            if (plugin.shouldStrip(abstractFieldNode)) {
+                if (StripEvents.isDebugEnabled()) {
+                    StripEvents.debug(abstractFieldNode.getName() + " is Stripping");
+                }
+                plugin.preStrip(abstractFieldNode, StripType.Field);
+                abstractFieldNode.plan(plan);
+                planned.add(new PlannedStrip(abstractFieldNode, StripType.Field));
+                fieldNodes.remove();
+            }
         }
-        plugin.onFinish();
+        return false;
+    }
+
+    private record PlannedStrip(AbstractNode node, StripType type) {
     }
 }
@@ -0,0 +1,104 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import com.github.tatercertified.asm_stripper.api.StripCounter;
+import org.objectweb.asm.tree.ClassNode;
+import org.spongepowered.asm.service.MixinService;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded LRU cache of resolved target {@link ClassNode}s, shared by every Strip in a run.<p>
+ * Class names are normalized to internal names, so {@code a.b.C} and {@code a/b/C} share an entry
+ */
+public final class TargetCache {
+    /**
+     * Default maximum number of cached targets
+     */
+    public static final int DEFAULT_SIZE = 256;
+
+    private final Loader loader;
+    private final Map<String, ClassNode> cache;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a cache that loads targets from the Mixin bytecode provider
+     * @param maxSize Maximum number of cached targets
+     */
+    public TargetCache(int maxSize) {
+        this(maxSize, name -> MixinService.getService().getBytecodeProvider().getClassNode(name, false));
+    }
+
+    /**
+     * Creates a cache with a custom loader
+     * @param maxSize Maximum number of cached targets
+     * @param loader Loads a ClassNode from its internal name
+     */
+    public TargetCache(int maxSize, Loader loader) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.loader = loader;
+        this.cache = new LinkedHashMap<>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ClassNode> eldest) {
+                return this.size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets a target ClassNode, loading it on the first request
+     * @param name Class name, either dotted or internal
+     * @return ClassNode of the target
+     * @throws ClassNotFoundException The class does not exist
+     * @throws IOException Failed to read the class
+     */
+    public ClassNode resolve(String name) throws ClassNotFoundException, IOException {
+        String internalName = name.replace('.', '/');
+        ClassNode node = this.cache.get(internalName);
+        if (node != null) {
+            this.hits++;
+            StripEvents.count(StripCounter.TargetCacheHits, 1);
+            return node;
+        }
+        this.misses++;
+        StripEvents.count(StripCounter.TargetsResolved, 1);
+        node = this.loader.load(internalName);
+        this.cache.put(internalName, node);
+        return node;
+    }
+
+    /**
+     * Gets how many requests were served from the cache
+     * @return Number of cache hits
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Gets how many requests had to load the target
+     * @return Number of cache misses
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Loads a target ClassNode
+     */
+    @FunctionalInterface
+    public interface Loader {
+        /**
+         * Loads a target ClassNode
+         * @param internalName Internal name of the class
+         * @return ClassNode of the class
+         * @throws ClassNotFoundException The class does not exist
+         * @throws IOException Failed to read the class
+         */
+        ClassNode load(String internalName) throws ClassNotFoundException, IOException;
+    }
+}
@@ -0,0 +1,379 @@
+package com.github.tatercertified.asm_stripper.backend.util;
+
+import com.github.tatercertified.asm_stripper.api.StripCounter;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.RecordComponentNode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Removes the private members that only the stripped code used, once a {@link StripPlan} is applied.<p>
+ * The live private members of every eager target are recorded before the plan is applied: methods reachable from
+ * the non-private methods, constructors, initializers, and annotated methods such as Mixin handlers, and fields those methods read.
+ * After the plan is applied, members that were live and no longer are get removed, along with the writes to removed fields.
+ * Members that were already unused are kept, as they may be reached by reflection or by Mixins that are not applied yet.
+ * Targets of any Mixin are never shaken, as Mixins of other mods may still inject into or shadow their private members.<p>
+ * Private members can only be used from their own nest, so reachability within the nest covers every use in the plan.
+ * Since Java 11, nestmates can use each other's private members, so the whole nest is scanned
+ * and classes whose nestmates cannot be resolved are left alone
+ */
+public final class TreeShaker {
+    private static final Set<String> SERIALIZATION_METHODS = Set.of("writeObject", "readObject", "readObjectNoData", "writeReplace", "readResolve", "$deserializeLambda$");
+    private static final Set<String> SERIALIZATION_FIELDS = Set.of("serialVersionUID", "serialPersistentFields");
+
+    private final StripPlan plan;
+    private final Map<String, ClassNode> nodes = new HashMap<>();
+    private final Map<String, List<ClassNode>> nests = new HashMap<>();
+    private final Map<String, Set<StripPlan.Key>> liveBefore = new HashMap<>();
+
+    /**
+     * Records the live private members of every eager target, so this has to be created before the plan is applied
+     * @param plan StripPlan that is about to be applied
+     */
+    public TreeShaker(StripPlan plan) {
+        this.plan = plan;
+        Set<String> mixinTargets = new HashSet<>();
+        for (StripPlan.Target target : plan.getTargets()) {
+            if (target.getNode() != null) {
+                this.nodes.put(target.getName(), target.getNode());
+            }
+            if (target.isMixinTarget()) {
+                mixinTargets.add(target.getName());
+            }
+        }
+        for (ClassNode node : this.nodes.values()) {
+            if (!hasCandidates(node)) {
+                continue;
+            }
+            // Mixin applies after the shake, and its injectors fail if a member they name is gone
+            if (mixinTargets.contains(node.name)) {
+                if (StripEvents.isDebugEnabled()) {
+                    StripEvents.debug("Not shaking " + node.name + ", it is the target of a Mixin");
+                }
+                continue;
+            }
+            List<ClassNode> nestmates = this.nestmates(node);
+            if (nestmates == null) {
+                if (StripEvents.isDebugEnabled()) {
+                    StripEvents.debug("Not shaking " + node.name + ", its nest could not be resolved");
+                }
+                continue;
+            }
+            this.nests.put(node.name, nestmates);
+            this.liveBefore.put(node.name, live(node, nestmates));
+        }
+    }
+
+    /**
+     * Removes the private members that became unreachable while the plan was applied
+     * @return Summary of the removed members
+     */
+    public Result shake() {
+        int methods = 0;
+        int fields = 0;
+        long bytes = 0;
+        for (Map.Entry<String, Set<StripPlan.Key>> entry : this.liveBefore.entrySet()) {
+            ClassNode node = this.nodes.get(entry.getKey());
+            Set<StripPlan.Key> dead = new HashSet<>(entry.getValue());
+            dead.removeAll(live(node, this.nests.get(node.name)));
+            if (dead.isEmpty()) {
+                continue;
+            }
+
+            int before = size(node);
+            int removedMethods = node.methods.size();
+            int removedFields = node.fields.size();
+            node.methods.removeIf(method -> dead.contains(new StripPlan.Key(node.name, method.name, method.desc)));
+            node.fields.removeIf(field -> dead.contains(new StripPlan.Key(node.name, field.name, field.desc)));
+            removedMethods -= node.methods.size();
+            removedFields -= node.fields.size();
+            if (removedFields != 0) {
+                removeWrites(node, dead);
+            }
+            StripEvents.count(StripCounter.DebugEntriesRemoved, ClassCompactor.compactInnerClasses(node));
+            int reclaimed = before - size(node);
+
+            if (StripEvents.isDebugEnabled()) {
+                StripEvents.debug("Shook " + removedMethods + " methods and " + removedFields + " fields out of " + node.name + ", reclaiming " + reclaimed + " bytes");
+            }
+            methods += removedMethods;
+            fields += removedFields;
+            bytes += reclaimed;
+        }
+        StripEvents.count(StripCounter.MembersShaken, methods + fields);
+        StripEvents.count(StripCounter.BytesReclaimed, bytes);
+        return new Result(methods, fields, bytes);
+    }
+
+    /**
+     * Gets the other classes of a node's nest
+     * @param node ClassNode of the class
+     * @return Nestmates of the class, or null if any of them could not be resolved
+     */
+    @Nullable
+    private List<ClassNode> nestmates(ClassNode node) {
+        Set<String> names = new LinkedHashSet<>();
+        if (node.nestHostClass != null) {
+            ClassNode host = this.lookup(node.nestHostClass);
+            if (host == null) {
+                return null;
+            }
+            names.add(host.name);
+            if (host.nestMembers != null) {
+                names.addAll(host.nestMembers);
+            }
+        }
+        if (node.nestMembers != null) {
+            names.addAll(node.nestMembers);
+        }
+        names.remove(node.name);
+
+        List<ClassNode> nestmates = new ArrayList<>(names.size());
+        for (String name : names) {
+            ClassNode nestmate = this.lookup(name);
+            if (nestmate == null) {
+                return null;
+            }
+            nestmates.add(nestmate);
+        }
+        return nestmates;
+    }
+
+    @Nullable
+    private ClassNode lookup(String name) {
+        ClassNode node = this.nodes.get(name);
+        if (node != null) {
+            return node;
+        }
+        try {
+            return this.plan.resolve(name);
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds the live private members of a class
+     * @param node ClassNode of the class
+     * @param nestmates Other classes of its nest
+     * @return Keys of the private methods reachable from the roots and of the private fields they read or the nestmates use
+     */
+    private static Set<StripPlan.Key> live(ClassNode node, List<ClassNode> nestmates) {
+        // Anything a nestmate touches stays, whether or not the nestmate's code is reachable
+        References external = new References(node.name, true);
+        for (ClassNode nestmate : nestmates) {
+            for (MethodNode method : nestmate.methods) {
+                external.scan(method);
+            }
+            if (node.name.equals(nestmate.outerClass) && nestmate.outerMethod != null) {
+                external.methods.add(new StripPlan.Key(node.name, nestmate.outerMethod, nestmate.outerMethodDesc));
+            }
+        }
+
+        Set<StripPlan.Key> live = new HashSet<>(external.methods);
+        live.addAll(external.fields);
+        Map<StripPlan.Key, MethodNode> candidates = new HashMap<>();
+        Deque<MethodNode> queue = new ArrayDeque<>();
+        for (MethodNode method : node.methods) {
+            StripPlan.Key key = new StripPlan.Key(node.name, method.name, method.desc);
+            if (isCandidate(method) && !live.contains(key)) {
+                candidates.put(key, method);
+            } else {
+                queue.add(method);
+            }
+        }
+
+        References own = new References(node.name, false);
+        while (!queue.isEmpty()) {
+            own.methods.clear();
+            own.scan(queue.poll());
+            for (StripPlan.Key key : own.methods) {
+                MethodNode method = candidates.remove(key);
+                if (method != null) {
+                    live.add(key);
+                    queue.add(method);
+                }
+            }
+        }
+        live.addAll(own.fields);
+
+        Set<StripPlan.Key> result = new HashSet<>();
+        for (MethodNode method : node.methods) {
+            StripPlan.Key key = new StripPlan.Key(node.name, method.name, method.desc);
+            if (isCandidate(method) && live.contains(key)) {
+                result.add(key);
+            }
+        }
+        for (FieldNode field : node.fields) {
+            StripPlan.Key key = new StripPlan.Key(node.name, field.name, field.desc);
+            if (isCandidate(node, field) && live.contains(key)) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the writes to removed fields with pops, so the computed values keep their side effects
+     * @param node ClassNode whose fields were removed
+     * @param dead Keys of the removed members
+     */
+    private static void removeWrites(ClassNode node, Set<StripPlan.Key> dead) {
+        for (MethodNode method : node.methods) {
+            MethodEditor editor = new MethodEditor(node.name, method);
+            for (AbstractInsnNode insn : method.instructions) {
+                if (insn instanceof FieldInsnNode fieldInsn && fieldInsn.owner.equals(node.name)
+                        && (fieldInsn.getOpcode() == Opcodes.PUTSTATIC || fieldInsn.getOpcode() == Opcodes.PUTFIELD)
+                        && dead.contains(new StripPlan.Key(fieldInsn.owner, fieldInsn.name, fieldInsn.desc))) {
+                    InsnList pops = new InsnList();
+                    pops.add(new InsnNode(Type.getType(fieldInsn.desc).getSize() == 2 ? Opcodes.POP2 : Opcodes.POP));
+                    if (fieldInsn.getOpcode() == Opcodes.PUTFIELD) {
+                        pops.add(new InsnNode(Opcodes.POP));
+                    }
+                    editor.replace(fieldInsn, pops);
+                }
+            }
+            if (editor.hasEdits()) {
+                editor.apply();
+            }
+        }
+    }
+
+    private static boolean hasCandidates(ClassNode node) {
+        for (MethodNode method : node.methods) {
+            if (isCandidate(method)) {
+                return true;
+            }
+        }
+        for (FieldNode field : node.fields) {
+            if (isCandidate(node, field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isCandidate(MethodNode method) {
+        return (method.access & Opcodes.ACC_PRIVATE) != 0
+                && method.name.charAt(0) != '<'
+                && !SERIALIZATION_METHODS.contains(method.name)
+                && isEmpty(method.visibleAnnotations) && isEmpty(method.invisibleAnnotations);
+    }
+
+    private static boolean isCandidate(ClassNode node, FieldNode field) {
+        if ((field.access & Opcodes.ACC_PRIVATE) == 0 || SERIALIZATION_FIELDS.contains(field.name)
+                || !isEmpty(field.visibleAnnotations) || !isEmpty(field.invisibleAnnotations)) {
+            return false;
+        }
+        if (node.recordComponents != null) {
+            for (RecordComponentNode component : node.recordComponents) {
+                if (component.name.equals(field.name)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isEmpty(@Nullable List<?> list) {
+        return list == null || list.isEmpty();
+    }
+
+    private static int size(ClassNode node) {
+        ClassWriter writer = new ClassWriter(0);
+        node.accept(writer);
+        return writer.toByteArray().length;
+    }
+
+    /**
+     * Summary of a shake
+     * @param methods Number of methods removed
+     * @param fields Number of fields removed
+     * @param bytes Number of class file bytes reclaimed
+     */
+    public record Result(int methods, int fields, long bytes) {
+    }
+
+    /**
+     * Members of one class referenced by the scanned methods
+     */
+    private static final class References {
+        private final String owner;
+        private final boolean writes;
+        private final Set<StripPlan.Key> methods = new HashSet<>();
+        private final Set<StripPlan.Key> fields = new HashSet<>();
+
+        /**
+         * @param owner Internal name of the class whose members are collected
+         * @param writes If field writes count as references, otherwise only reads do
+         */
+        private References(String owner, boolean writes) {
+            this.owner = owner;
+            this.writes = writes;
+        }
+
+        private void scan(MethodNode method) {
+            for (AbstractInsnNode insn : method.instructions) {
+                switch (insn) {
+                    case MethodInsnNode methodInsn when methodInsn.owner.equals(this.owner) ->
+                            this.methods.add(new StripPlan.Key(methodInsn.owner, methodInsn.name, methodInsn.desc));
+                    case FieldInsnNode fieldInsn when fieldInsn.owner.equals(this.owner) -> {
+                        if (this.writes || fieldInsn.getOpcode() == Opcodes.GETSTATIC || fieldInsn.getOpcode() == Opcodes.GETFIELD) {
+                            this.fields.add(new StripPlan.Key(fieldInsn.owner, fieldInsn.name, fieldInsn.desc));
+                        }
+                    }
+                    case InvokeDynamicInsnNode indy -> {
+                        this.constant(indy.bsm);
+                        for (Object arg : indy.bsmArgs) {
+                            this.constant(arg);
+                        }
+                    }
+                    case LdcInsnNode ldc -> this.constant(ldc.cst);
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        private void constant(Object constant) {
+            switch (constant) {
+                case Handle handle when handle.getOwner().equals(this.owner) -> {
+                    StripPlan.Key key = new StripPlan.Key(handle.getOwner(), handle.getName(), handle.getDesc());
+                    // Field handles are the first four tags, and any of them may read the field
+                    (handle.getTag() <= Opcodes.H_PUTSTATIC ? this.fields : this.methods).add(key);
+                }
+                case ConstantDynamic dynamic -> {
+                    this.constant(dynamic.getBootstrapMethod());
+                    for (int i = 0; i < dynamic.getBootstrapMethodArgumentCount(); i++) {
+                        this.constant(dynamic.getBootstrapMethodArgument(i));
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+    }
+}
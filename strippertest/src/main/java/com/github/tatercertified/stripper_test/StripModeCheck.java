@@ -0,0 +1,114 @@
+package com.github.tatercertified.stripper_test;
+
+import com.github.tatercertified.asm_stripper.api.StripMode;
+import com.github.tatercertified.asm_stripper.backend.util.ClassHierarchy;
+import com.github.tatercertified.asm_stripper.backend.util.ClassVerifier;
+import com.github.tatercertified.asm_stripper.backend.util.FrameWriter;
+import com.github.tatercertified.asm_stripper.backend.util.StripPlan;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Strips {@link StripModeFixture} in every {@link StripMode} and checks that the results verify and behave the same
+ */
+final class StripModeCheck {
+    private static final String FIXTURE = Type.getInternalName(StripModeFixture.class);
+
+    /**
+     * Runs the check
+     * @return Description of the first difference, or null if both modes agree
+     * @throws IOException Failed to read the fixture
+     * @throws ReflectiveOperationException Failed to call the fixture
+     */
+    static String run() throws IOException, ReflectiveOperationException {
+        byte[] original;
+        try (InputStream in = StripModeCheck.class.getResourceAsStream("StripModeFixture.class")) {
+            original = Objects.requireNonNull(in).readAllBytes();
+        }
+
+        StripPlan.Target target = new StripPlan().target(FIXTURE);
+        target.stripType(Type.getInternalName(StripModeFixture.Gone.class));
+        target.stripMethod(new StripPlan.Key(FIXTURE, "gone", "(II)I"));
+        String holder = Type.getInternalName(StripModeFixture.Holder.class);
+        target.stripField(new StripPlan.Key(holder, "count", "I"));
+        target.stripField(new StripPlan.Key(holder, "size", "I"));
+
+        ClassNode node = new ClassNode();
+        new ClassReader(original).accept(node, ClassReader.EXPAND_FRAMES);
+        Set<MethodNode> edited = new HashSet<>();
+        target.apply(node, edited);
+        byte[] tree = FrameWriter.write(node, edited, new ClassHierarchy(StripModeCheck.class.getClassLoader()));
+        byte[] visitor = target.apply(original);
+
+        for (byte[] stripped : new byte[][]{tree, visitor}) {
+            String problem = ClassVerifier.verify(stripped);
+            if (problem == null) {
+                problem = findStrippedField(stripped, target.getFields());
+            }
+            if (problem != null) {
+                return problem;
+            }
+        }
+
+        Class<?> treeClass = define(tree);
+        Class<?> visitorClass = define(visitor);
+        for (Method method : StripModeFixture.class.getDeclaredMethods()) {
+            if (method.getReturnType() != Object.class) {
+                continue;
+            }
+            for (boolean cond : new boolean[]{true, false}) {
+                Object treeResult = call(treeClass, method, cond);
+                Object visitorResult = call(visitorClass, method, cond);
+                if (!Objects.equals(treeResult, visitorResult)) {
+                    return method.getName() + "(" + cond + ") returned " + treeResult + " in Tree mode and " + visitorResult + " in Visitor mode";
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds an access to a stripped field left in a class, which would fail with a NoSuchFieldError once the field is gone
+     * @param classBytes Stripped class
+     * @param fields Stripped fields
+     * @return Description of the access, or null if there is none
+     */
+    private static String findStrippedField(byte[] classBytes, Set<StripPlan.Key> fields) {
+        ClassNode node = new ClassNode();
+        new ClassReader(classBytes).accept(node, 0);
+        for (MethodNode method : node.methods) {
+            for (AbstractInsnNode insn : method.instructions) {
+                if (insn instanceof FieldInsnNode field && fields.contains(new StripPlan.Key(field.owner, field.name, field.desc))) {
+                    return method.name + " still accesses the stripped field " + field.owner + "." + field.name;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Object call(Class<?> owner, Method method, boolean cond) throws ReflectiveOperationException {
+        Method stripped = owner.getDeclaredMethod(method.getName(), method.getParameterTypes());
+        stripped.setAccessible(true);
+        return stripped.invoke(null, cond, 5);
+    }
+
+    private static Class<?> define(byte[] classBytes) {
+        // Every stripped copy gets its own loader, so the JVM verifies it like any other class
+        return new ClassLoader(StripModeCheck.class.getClassLoader()) {
+            private Class<?> define() {
+                return this.defineClass(null, classBytes, 0, classBytes.length);
+            }
+        }.define();
+    }
+}
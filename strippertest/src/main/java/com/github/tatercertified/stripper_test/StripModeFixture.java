@@ -0,0 +1,56 @@
+package com.github.tatercertified.stripper_test;
+
+/**
+ * Code stripped by {@link StripModeCheck}, with branches inside the arguments of stripped calls and constructors,
+ * and accesses to the stripped fields of another class
+ */
+final class StripModeFixture {
+    static Object newWithBranch(boolean cond, int a) {
+        return new Gone(cond ? a : -a);
+    }
+
+    static Object newInArgument(boolean cond, int a) {
+        return String.valueOf(new Gone(a)) + (cond ? "yes" : "no");
+    }
+
+    static Object callWithBranch(boolean cond, int a) {
+        return Math.max(cond ? a : -a, 3) + Gone.value(cond ? 1 : 2);
+    }
+
+    static Object nestedCalls(boolean cond, int a) {
+        return String.valueOf(Gone.value(Gone.value(cond ? a : a * 2))) + a;
+    }
+
+    static Object strippedMethod(boolean cond, int a) {
+        return gone(cond ? a : -a, a > 0 ? 1 : 2) + a;
+    }
+
+    static Object staticField(boolean cond, int a) {
+        return Holder.count + (cond ? a : -a);
+    }
+
+    static Object instanceField(boolean cond, int a) {
+        Holder holder = new Holder();
+        holder.size = cond ? a : -a;
+        return holder.size + a;
+    }
+
+    static int gone(int a, int b) {
+        return a * b;
+    }
+
+    static final class Gone {
+        Gone(int value) {
+        }
+
+        static int value(int value) {
+            return value;
+        }
+    }
+
+    // Public, as the stripped copies of the fixture are defined in another loader and package
+    public static final class Holder {
+        public static int count = 7;
+        public int size = 3;
+    }
+}
@@ -23,5 +23,16 @@ public class StripperTest implements ModInitializer {
         } catch (Exception e) {
             LOGGER.info("Mixin Field Strip Passed");
         }
+
+        try {
+            String difference = StripModeCheck.run();
+            if (difference == null) {
+                LOGGER.info("Strip Mode Differential Passed");
+            } else {
+                LOGGER.info("Strip Mode Differential Failed: {}", difference);
+            }
+        } catch (Exception e) {
+            LOGGER.info("Strip Mode Differential Failed", e);
+        }
     }
 }
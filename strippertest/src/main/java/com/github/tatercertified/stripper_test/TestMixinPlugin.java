@@ -1,5 +1,7 @@
 package com.github.tatercertified.stripper_test;
 
+import com.github.tatercertified.asm_stripper.ASMStripper;
+import com.github.tatercertified.asm_stripper.api.Slf4jStripListener;
 import com.github.tatercertified.asm_stripper.api.StripType;
 import com.github.tatercertified.asm_stripper.api.StripperPlugin;
 import com.github.tatercertified.asm_stripper.backend.util.AbstractNode;
@@ -12,7 +14,14 @@ import java.util.Set;
 
 public class TestMixinPlugin implements IMixinConfigPlugin {
     static {
+        ASMStripper.addListener(new Slf4jStripListener());
+
         StripperPlugin plugin = new StripperPlugin() {
+            @Override
+            public boolean lazy() {
+                return true;
+            }
+
             @Override
             public void preLoad() {
             }
@@ -65,6 +74,6 @@ public class TestMixinPlugin implements IMixinConfigPlugin {
 
     @Override
     public void postApply(String targetClassName, ClassNode targetClass, String mixinClassName, IMixinInfo mixinInfo) {
-
+        ASMStripper.applyLazyStrips(targetClassName, targetClass);
     }
 }